@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.file.Path;
 
 /**
  * A wrapper for a window in GLFW
@@ -728,6 +729,25 @@ public class Window {
 			throw new NullPointerException("stream");
 		}
 
+		ByteBuffer image = IOUtil.nativeBufferFrom(stream);
+		try {
+			this.setIcon(image);
+		} finally {
+			MemoryUtil.memFree(image);
+		}
+	}
+
+	/**
+	 * Sets the icon of the window to the contents of the file at {@code path}, memory-mapping it instead of reading it.
+	 */
+	public void setIcon(Path path) throws IOException {
+		this.setIcon(IOUtil.map(path));
+	}
+
+	/**
+	 * Sets the icon of the window to an encoded image, like a PNG file.
+	 */
+	private void setIcon(ByteBuffer encoded) {
 		try (MemoryStack stack = MemoryStack.stackPush()) {
 			GLFWImage image = GLFWImage.malloc();
 			GLFWImage.Buffer imagebf = GLFWImage.malloc(1);
@@ -736,7 +756,7 @@ public class Window {
 			IntBuffer height = stack.mallocInt(1);
 			IntBuffer comp = stack.mallocInt(1);
 
-			ByteBuffer data = STBImage.stbi_load_from_memory(IOUtil.byteBufferFrom(stream), width, height, comp, 4);
+			ByteBuffer data = STBImage.stbi_load_from_memory(encoded, width, height, comp, 4);
 			if (data == null) throw new NullPointerException("data = null");
 
 			image.set(width.get(), height.get(), data);
@@ -23,62 +23,112 @@ import dev.seeight.common.lwjgl.font.json.FontData;
 import dev.seeight.renderer.renderer.Texture;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * A font made of a texture atlas and its glyphs. The glyphs are shared and never modified, so
+ * {@link #withScale(float)} creates a font of another scale that only holds its own scaled metrics.
+ */
 public class AtlasFont implements IFont {
+	/**
+	 * Layout of the unscaled metrics of {@link #AtlasFont(Texture, String, int, int[], float[], float)}.
+	 */
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int WIDTH = 2;
+	public static final int HEIGHT = 3;
+	public static final int ORIGIN_X = 4;
+	public static final int ORIGIN_Y = 5;
+	public static final int ADVANCE = 6;
+	public static final int STRIDE = 7;
+
 	private final float size;
 	private final Texture texture;
-	private final FontData fontData;
+	private final AtlasGlyphs glyphs;
 	private final float ascent;
 	private final float descent;
 	private final float maxHeight;
-	private final Map<Integer, CharacterData> characters;
-
+	/**
+	 * The characters of this scale, created when they are requested. Same order as the {@link #glyphs}.
+	 */
+	private final CharacterData[] characters;
+	/**
+	 * The scaled metrics of every glyph. The slot of a glyph is its index in the {@link #glyphs}.
+	 */
+	private final GlyphStore glyphStore;
+	private final float scale;
+
+	/**
+	 * Creates a font from JSON font data. The font data isn't modified, so it can be used to create other fonts,
+	 * but it's cheaper to create them with {@link #withScale(float)}.
+	 */
 	public AtlasFont(Texture texture, FontData fontData, float scale) {
+		this(texture, new AtlasGlyphs(fontData, texture.getWidth(), texture.getHeight()), scale);
+	}
+
+	/**
+	 * Creates a font from packed metrics, without creating any object per glyph.
+	 * The {@link CharacterData} of a glyph is only created when it is requested.
+	 *
+	 * @param codepoints The codepoint of every glyph.
+	 * @param metrics    The unscaled metrics of every glyph, {@link #STRIDE} floats each, in the same order as {@code codepoints}.
+	 * @see AtlasFontFile
+	 */
+	public AtlasFont(Texture texture, String name, int size, int[] codepoints, float[] metrics, float scale) {
+		this(texture, new AtlasGlyphs(name, size, codepoints, metrics, texture.getWidth(), texture.getHeight()), scale);
+	}
+
+	/**
+	 * Creates a font from glyphs shared with other fonts.
+	 *
+	 * @param texture The texture of the atlas the glyphs were created for.
+	 * @param scale   The scale applied to the metrics of the font.
+	 */
+	public AtlasFont(Texture texture, AtlasGlyphs glyphs, float scale) {
 		this.texture = texture;
-		this.fontData = fontData;
-		this.size = this.fontData.size * scale;
-		
-		this.characters = new HashMap<>();
-
-		float[] maxOriginY = new float[1];
-		float[] maxOriginX = new float[1];
-		float[] maxDescent = new float[1];
-		float[] maxHeight = new float[1];
-		this.fontData.characters.forEach((s, c) -> {
-			c.calcUV(texture.getWidth(), texture.getHeight());
-
-			if (maxOriginY[0] < c.originY) {
-				maxOriginY[0] = c.originY;
-			}
-			if (maxOriginX[0] < c.originX) {
-				maxOriginX[0] = c.originX;
-			}
-
-			if (maxHeight[0] < c.height) {
-				maxHeight[0] = c.height;
-			}
-
-			float descent = c.height - c.originY;
-			if (maxDescent[0] < descent) {
-				maxDescent[0] = descent;
-			}
-
-			characters.put(s.codePointAt(0), c);
-		});
-		this.fontData.characters.forEach((s, c) -> {
-			c.renderWidth = c.width * scale;
-			c.renderHeight = c.height * scale;
-			c.renderOriginX = (maxOriginX[0] - c.originX) * scale;
-			c.renderOriginY = (maxOriginY[0] - c.originY) * scale;
-			c.renderAdvance = c.advance * scale;
-		});
-
-		// TODO: is this correct?
-		this.ascent = maxOriginY[0] * scale;
-		this.descent = -maxDescent[0] * scale;
-		this.maxHeight = maxHeight[0] * scale + this.descent;
+		this.glyphs = glyphs;
+		this.size = glyphs.getSize() * scale;
+		this.scale = scale;
+
+		int count = glyphs.getGlyphCount();
+		this.characters = new CharacterData[count];
+		this.glyphStore = new GlyphStore(count);
+
+		float maxOriginX = glyphs.getMaxOriginX();
+		float maxOriginY = glyphs.getMaxOriginY();
+		for (int i = 0; i < count; i++) {
+			this.glyphStore.add(
+					(maxOriginX - glyphs.getMetric(i, ORIGIN_X)) * scale,
+					(maxOriginY - glyphs.getMetric(i, ORIGIN_Y)) * scale,
+					glyphs.getMetric(i, WIDTH) * scale,
+					glyphs.getMetric(i, HEIGHT) * scale,
+					glyphs.getMetric(i, ADVANCE) * scale,
+					glyphs.getU(i),
+					glyphs.getV(i),
+					glyphs.getU2(i),
+					glyphs.getV2(i)
+			);
+		}
+
+		this.ascent = maxOriginY * scale;
+		this.descent = -glyphs.getMaxDescent() * scale;
+		this.maxHeight = glyphs.getMaxHeight() * scale + this.descent;
+	}
+
+	/**
+	 * @return A font of another scale that shares the glyphs and texture of this one.
+	 */
+	public @NotNull AtlasFont withScale(float scale) {
+		return new AtlasFont(this.texture, this.glyphs, scale);
+	}
+
+	/**
+	 * @return The unscaled glyphs of the font, shared with the fonts created with {@link #withScale(float)}.
+	 */
+	public @NotNull AtlasGlyphs getGlyphs() {
+		return this.glyphs;
+	}
+
+	public float getScale() {
+		return this.scale;
 	}
 
 	@Override
@@ -88,7 +138,7 @@ public class AtlasFont implements IFont {
 
 	@Override
 	public @NotNull String getName() {
-		return this.fontData.name;
+		return this.glyphs.getName();
 	}
 
 	@Override
@@ -118,6 +168,39 @@ public class AtlasFont implements IFont {
 
 	@Override
 	public CharacterData getCharacterData(int codepoint) {
-		return this.characters.get(codepoint);
+		int index = this.glyphs.indexOf(codepoint);
+		if (index == CodepointTable.MISSING) return null;
+
+		CharacterData c = this.characters[index];
+		if (c == null) {
+			c = this.createCharacterData(index);
+			this.characters[index] = c;
+		}
+		return c;
+	}
+
+	private CharacterData createCharacterData(int index) {
+		float[] data = this.glyphStore.getData();
+		int slotOffset = index * GlyphStore.STRIDE;
+		AtlasGlyphs glyphs = this.glyphs;
+
+		CharacterData c = new CharacterData((int) glyphs.getMetric(index, WIDTH), (int) glyphs.getMetric(index, HEIGHT), glyphs.getMetric(index, ORIGIN_X), glyphs.getMetric(index, ORIGIN_Y), glyphs.getMetric(index, ADVANCE),
+				data[slotOffset + GlyphStore.U], data[slotOffset + GlyphStore.V], data[slotOffset + GlyphStore.U2], data[slotOffset + GlyphStore.V2], this.scale);
+		c.x = (int) glyphs.getMetric(index, X);
+		c.y = (int) glyphs.getMetric(index, Y);
+		c.renderOriginX = data[slotOffset + GlyphStore.OFFSET_X];
+		c.renderOriginY = data[slotOffset + GlyphStore.OFFSET_Y];
+		c.slot = index;
+		return c;
+	}
+
+	@Override
+	public @NotNull GlyphStore getGlyphStore() {
+		return this.glyphStore;
+	}
+
+	@Override
+	public int getGlyphSlot(int codepoint) {
+		return this.glyphs.indexOf(codepoint);
 	}
 }
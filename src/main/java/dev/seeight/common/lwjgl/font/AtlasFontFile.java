@@ -0,0 +1,198 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+import dev.seeight.common.lwjgl.font.json.FontData;
+import dev.seeight.renderer.renderer.Texture;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A compact binary version of {@link FontData}, loaded without creating any object per glyph.<p>
+ * The file is little endian and has three parts:
+ * <ul>
+ *     <li>A header with the magic, the version, the size of the font and of its texture, the amount of glyphs and the name.</li>
+ *     <li>The codepoints of the glyphs, sorted, as 32-bit integers. Glyphs outside of Latin-1 are binary searched in them.</li>
+ *     <li>A record per glyph, in the same order as the codepoints: the position and size in the texture as unsigned 16-bit
+ *     integers, and the origin and advance as 32-bit floats.</li>
+ * </ul>
+ *
+ * @author C8FF
+ */
+public class AtlasFontFile {
+	private static final int MAGIC = 0x544E4641; // "AFNT"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 28;
+	private static final int RECORD_SIZE = 4 * Short.BYTES + 3 * Float.BYTES;
+
+	private AtlasFontFile() {
+	}
+
+	/**
+	 * Converts JSON font data to the binary format.
+	 *
+	 * @throws IllegalArgumentException If two characters have the same codepoint, or a glyph is outside the 16-bit range.
+	 */
+	public static @NotNull ByteBuffer encode(FontData fontData) {
+		int count = fontData.characters.size();
+		int[] codepoints = new int[count];
+		CharacterData[] characters = new CharacterData[count];
+		int i = 0;
+		for (Map.Entry<String, CharacterData> entry : fontData.characters.entrySet()) {
+			codepoints[i] = entry.getKey().codePointAt(0);
+			characters[i] = entry.getValue();
+			i++;
+		}
+
+		// Sort the codepoints along with their characters.
+		long[] order = new long[count];
+		for (i = 0; i < count; i++) {
+			order[i] = ((long) codepoints[i] << 32) | i;
+		}
+		Arrays.sort(order);
+
+		byte[] name = fontData.name.getBytes(StandardCharsets.UTF_8);
+		int namePadding = -name.length & 3;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + name.length + namePadding + count * (Integer.BYTES + RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(fontData.size);
+		buffer.putInt(fontData.width);
+		buffer.putInt(fontData.height);
+		buffer.putInt(count);
+		buffer.putInt(name.length);
+		buffer.put(name);
+		// Keep the tables aligned.
+		buffer.position(buffer.position() + namePadding);
+
+		int previous = -1;
+		for (long o : order) {
+			int codepoint = (int) (o >> 32);
+			if (codepoint == previous) throw new IllegalArgumentException("Duplicated codepoint " + codepoint);
+			buffer.putInt(codepoint);
+			previous = codepoint;
+		}
+		for (long o : order) {
+			CharacterData c = characters[(int) o];
+			buffer.putShort(toUnsignedShort(c.x));
+			buffer.putShort(toUnsignedShort(c.y));
+			buffer.putShort(toUnsignedShort(c.width));
+			buffer.putShort(toUnsignedShort(c.height));
+			buffer.putFloat(c.originX);
+			buffer.putFloat(c.originY);
+			buffer.putFloat(c.advance);
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes JSON font data in the binary format.
+	 */
+	public static void write(FontData fontData, OutputStream outputStream) throws IOException {
+		ByteBuffer buffer = encode(fontData);
+		outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+	}
+
+	/**
+	 * Writes JSON font data in the binary format.
+	 */
+	public static void write(FontData fontData, Path path) throws IOException {
+		try (OutputStream outputStream = Files.newOutputStream(path)) {
+			write(fontData, outputStream);
+		}
+	}
+
+	/**
+	 * Memory-maps a binary font and creates a font from it.
+	 *
+	 * @param texture The texture of the atlas.
+	 * @param scale   The scale applied to the metrics of the font.
+	 */
+	public static @NotNull AtlasFont read(Path path, Texture texture, float scale) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), texture, scale);
+		}
+	}
+
+	/**
+	 * Creates a font from binary font data.
+	 *
+	 * @param buffer  The data, from its position. The position isn't modified.
+	 * @param texture The texture of the atlas.
+	 * @param scale   The scale applied to the metrics of the font.
+	 * @throws IllegalArgumentException If the data isn't a valid binary font.
+	 */
+	public static @NotNull AtlasFont read(ByteBuffer buffer, Texture texture, float scale) {
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) throw new IllegalArgumentException("Not a binary font");
+		int version = data.getInt();
+		if (version != VERSION) throw new IllegalArgumentException("Unsupported binary font version " + version);
+
+		int size = data.getInt();
+		data.getInt(); // width
+		data.getInt(); // height
+		int count = data.getInt();
+		int nameLength = data.getInt();
+		if (count < 0 || nameLength < 0 || data.remaining() < nameLength + (-nameLength & 3) + (long) count * (Integer.BYTES + RECORD_SIZE)) {
+			throw new IllegalArgumentException("Truncated binary font");
+		}
+
+		byte[] name = new byte[nameLength];
+		data.get(name);
+		data.position(data.position() + (-nameLength & 3));
+
+		int[] codepoints = new int[count];
+		data.asIntBuffer().get(codepoints);
+		data.position(data.position() + count * Integer.BYTES);
+
+		float[] metrics = new float[count * AtlasFont.STRIDE];
+		for (int offset = 0; offset < metrics.length; offset += AtlasFont.STRIDE) {
+			metrics[offset + AtlasFont.X] = Short.toUnsignedInt(data.getShort());
+			metrics[offset + AtlasFont.Y] = Short.toUnsignedInt(data.getShort());
+			metrics[offset + AtlasFont.WIDTH] = Short.toUnsignedInt(data.getShort());
+			metrics[offset + AtlasFont.HEIGHT] = Short.toUnsignedInt(data.getShort());
+			metrics[offset + AtlasFont.ORIGIN_X] = data.getFloat();
+			metrics[offset + AtlasFont.ORIGIN_Y] = data.getFloat();
+			metrics[offset + AtlasFont.ADVANCE] = data.getFloat();
+		}
+
+		// The arrays were just created, so the glyphs can keep them.
+		AtlasGlyphs glyphs = new AtlasGlyphs(new String(name, StandardCharsets.UTF_8), size, codepoints, metrics, texture.getWidth(), texture.getHeight(), false);
+		return new AtlasFont(texture, glyphs, scale);
+	}
+
+	private static short toUnsignedShort(int value) {
+		if (value < 0 || value > 0xFFFF) throw new IllegalArgumentException("Value outside of the 16-bit range: " + value);
+		return (short) value;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+import dev.seeight.common.lwjgl.font.json.FontData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The unscaled glyphs of an atlas, shared by every {@link AtlasFont} created from it.<p>
+ * It can't be modified after it's created, so a single parsed atlas can back fonts of any amount of scales
+ * (see {@link AtlasFont#withScale(float)}), each one keeping only its scaled metrics.<p>
+ * When the codepoints are sorted, like the ones of {@link AtlasFontFile}, only Latin-1 is put in a {@link CodepointTable}
+ * and the other codepoints are binary searched, so large atlases are loaded without hashing every glyph.
+ *
+ * @author C8FF
+ */
+public final class AtlasGlyphs {
+	private final String name;
+	private final int size;
+	private final int[] codepoints;
+	/**
+	 * {@link AtlasFont#STRIDE} floats per glyph, in the same order as {@link #codepoints}.
+	 */
+	private final float[] metrics;
+	/**
+	 * The texture coordinates of every glyph: U, V, U2 and V2.
+	 */
+	private final float[] uvs;
+	/**
+	 * The index of every glyph. If the codepoints are sorted, it only holds the ones lower than
+	 * {@link CodepointTable#DEFAULT_DENSE_SIZE}, and the rest are binary searched in {@link #codepoints}.
+	 */
+	private final CodepointTable indices;
+	/**
+	 * The index of the first sparse codepoint when the codepoints are sorted, or -1 if they aren't.
+	 */
+	private final int sortedFrom;
+	private final float maxOriginX;
+	private final float maxOriginY;
+	private final float maxDescent;
+	private final float maxHeight;
+
+	/**
+	 * Copies the glyphs of JSON font data. The font data isn't modified.
+	 *
+	 * @param textureWidth  The width of the texture of the atlas.
+	 * @param textureHeight The height of the texture of the atlas.
+	 */
+	public AtlasGlyphs(FontData fontData, int textureWidth, int textureHeight) {
+		this(fontData.name, fontData.size, codepointsOf(fontData), metricsOf(fontData), textureWidth, textureHeight, false);
+	}
+
+	/**
+	 * @param codepoints    The codepoint of every glyph.
+	 * @param metrics       The unscaled metrics of every glyph, {@link AtlasFont#STRIDE} floats each, in the same order as {@code codepoints}.
+	 * @param textureWidth  The width of the texture of the atlas.
+	 * @param textureHeight The height of the texture of the atlas.
+	 * @see AtlasFontFile
+	 */
+	public AtlasGlyphs(String name, int size, int[] codepoints, float[] metrics, int textureWidth, int textureHeight) {
+		this(name, size, codepoints, metrics, textureWidth, textureHeight, true);
+	}
+
+	/**
+	 * @param copy If false, the glyphs take the arrays, so they must not be modified afterwards.
+	 */
+	AtlasGlyphs(String name, int size, int[] codepoints, float[] metrics, int textureWidth, int textureHeight, boolean copy) {
+		if (metrics.length != codepoints.length * AtlasFont.STRIDE) throw new IllegalArgumentException("metrics.length != codepoints.length * STRIDE");
+
+		this.name = name;
+		this.size = size;
+		this.codepoints = copy ? codepoints.clone() : codepoints;
+		this.metrics = copy ? metrics.clone() : metrics;
+
+		int count = codepoints.length;
+		this.indices = new CodepointTable();
+		this.uvs = new float[count * 4];
+		this.sortedFrom = findSortedFrom(codepoints);
+
+		float maxOriginY = 0;
+		float maxOriginX = 0;
+		float maxDescent = 0;
+		float maxHeight = 0;
+		for (int i = 0; i < count; i++) {
+			int offset = i * AtlasFont.STRIDE;
+			float x = metrics[offset + AtlasFont.X];
+			float y = metrics[offset + AtlasFont.Y];
+			float width = metrics[offset + AtlasFont.WIDTH];
+			float height = metrics[offset + AtlasFont.HEIGHT];
+			float originY = metrics[offset + AtlasFont.ORIGIN_Y];
+			maxOriginY = Math.max(maxOriginY, originY);
+			maxOriginX = Math.max(maxOriginX, metrics[offset + AtlasFont.ORIGIN_X]);
+			maxHeight = Math.max(maxHeight, height);
+			maxDescent = Math.max(maxDescent, height - originY);
+
+			this.uvs[i * 4] = x / textureWidth;
+			this.uvs[i * 4 + 1] = y / textureHeight;
+			this.uvs[i * 4 + 2] = (x + width) / textureWidth;
+			this.uvs[i * 4 + 3] = (y + height) / textureHeight;
+
+			if (this.sortedFrom == -1 || i < this.sortedFrom) {
+				this.indices.put(codepoints[i], i);
+			}
+		}
+
+		this.maxOriginX = maxOriginX;
+		this.maxOriginY = maxOriginY;
+		this.maxDescent = maxDescent;
+		this.maxHeight = maxHeight;
+	}
+
+	/**
+	 * @return The index of the first codepoint that isn't lower than {@link CodepointTable#DEFAULT_DENSE_SIZE},
+	 * or -1 if the codepoints aren't strictly increasing.
+	 */
+	private static int findSortedFrom(int[] codepoints) {
+		int from = codepoints.length;
+		for (int i = 0; i < codepoints.length; i++) {
+			if (i > 0 && codepoints[i] <= codepoints[i - 1]) return -1;
+			if (from == codepoints.length && codepoints[i] >= CodepointTable.DEFAULT_DENSE_SIZE) from = i;
+		}
+		return from;
+	}
+
+	private static int[] codepointsOf(FontData fontData) {
+		int[] codepoints = new int[fontData.characters.size()];
+		int i = 0;
+		for (String s : fontData.characters.keySet()) {
+			codepoints[i++] = s.codePointAt(0);
+		}
+		return codepoints;
+	}
+
+	private static float[] metricsOf(FontData fontData) {
+		float[] metrics = new float[fontData.characters.size() * AtlasFont.STRIDE];
+		int offset = 0;
+		for (Map.Entry<String, CharacterData> entry : fontData.characters.entrySet()) {
+			CharacterData c = entry.getValue();
+			metrics[offset + AtlasFont.X] = c.x;
+			metrics[offset + AtlasFont.Y] = c.y;
+			metrics[offset + AtlasFont.WIDTH] = c.width;
+			metrics[offset + AtlasFont.HEIGHT] = c.height;
+			metrics[offset + AtlasFont.ORIGIN_X] = c.originX;
+			metrics[offset + AtlasFont.ORIGIN_Y] = c.originY;
+			metrics[offset + AtlasFont.ADVANCE] = c.advance;
+			offset += AtlasFont.STRIDE;
+		}
+		return metrics;
+	}
+
+	public @NotNull String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return The unscaled size of the font.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return The amount of glyphs.
+	 */
+	public int getGlyphCount() {
+		return this.codepoints.length;
+	}
+
+	/**
+	 * @return The index of the glyph of a codepoint, or {@link CodepointTable#MISSING}.
+	 */
+	public int indexOf(int codepoint) {
+		if (this.sortedFrom == -1 || codepoint < CodepointTable.DEFAULT_DENSE_SIZE) {
+			return this.indices.get(codepoint);
+		}
+
+		int index = Arrays.binarySearch(this.codepoints, this.sortedFrom, this.codepoints.length, codepoint);
+		return index < 0 ? CodepointTable.MISSING : index;
+	}
+
+	public int getCodepoint(int index) {
+		return this.codepoints[index];
+	}
+
+	/**
+	 * @param index The index of the glyph.
+	 * @param field The metric, like {@link AtlasFont#ADVANCE}.
+	 */
+	public float getMetric(int index, int field) {
+		return this.metrics[index * AtlasFont.STRIDE + field];
+	}
+
+	public float getU(int index) {
+		return this.uvs[index * 4];
+	}
+
+	public float getV(int index) {
+		return this.uvs[index * 4 + 1];
+	}
+
+	public float getU2(int index) {
+		return this.uvs[index * 4 + 2];
+	}
+
+	public float getV2(int index) {
+		return this.uvs[index * 4 + 3];
+	}
+
+	/**
+	 * @return The biggest horizontal origin of the glyphs. Glyphs are aligned to it.
+	 */
+	public float getMaxOriginX() {
+		return this.maxOriginX;
+	}
+
+	/**
+	 * @return The biggest vertical origin of the glyphs. Glyphs are aligned to it.
+	 */
+	public float getMaxOriginY() {
+		return this.maxOriginY;
+	}
+
+	/**
+	 * @return The biggest distance from the origin to the bottom of a glyph.
+	 */
+	public float getMaxDescent() {
+		return this.maxDescent;
+	}
+
+	/**
+	 * @return The height of the tallest glyph.
+	 */
+	public float getMaxHeight() {
+		return this.maxHeight;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The result of rasterizing a font: the atlas bitmap and the metrics of every glyph, before any scale is applied.<p>
+ * It doesn't hold any OpenGL resource and can't be modified, so it can be created on any thread, stored
+ * (see {@link FontAtlasCache}) and turned into a texture later with {@link TTFFont#TTFFont(BakedFont, float)}.
+ *
+ * @author C8FF
+ */
+public final class BakedFont {
+	/**
+	 * Position of the glyph in the bitmap, in pixels.
+	 */
+	public static final int X = 0;
+	public static final int Y = 1;
+	/**
+	 * Size of the glyph in the bitmap, in pixels.
+	 */
+	public static final int WIDTH = 2;
+	public static final int HEIGHT = 3;
+	/**
+	 * Offset from the pen position to the top left of the glyph.
+	 */
+	public static final int ORIGIN_X = 4;
+	public static final int ORIGIN_Y = 5;
+	public static final int ADVANCE = 6;
+	/**
+	 * Amount of floats per glyph in {@link #getMetrics()}.
+	 */
+	public static final int STRIDE = 7;
+
+	private final String name;
+	private final int fontHeight;
+	private final float height;
+	private final float ascent;
+	private final float descent;
+	private final float lineGap;
+	private final boolean sdf;
+	private final int subpixelVariants;
+	private final int textureWidth;
+	private final int textureHeight;
+	private final float packingEfficiency;
+	private final int[] codepoints;
+	private final int[] glyphIndices;
+	private final float[] metrics;
+	private final ByteBuffer bitmap;
+	private final int[] kerningPairs;
+	private final float[] kerningAmounts;
+
+	/**
+	 * @param subpixelVariants The amount of variants of every glyph. The variants of a glyph are consecutive.
+	 * @param codepoints       The codepoint of every glyph.
+	 * @param glyphIndices     The index of every glyph in the font file, in the same order as {@code codepoints}. 0 for
+	 *                         codepoints the font doesn't have.
+	 * @param metrics          {@link #STRIDE} floats per glyph, in the same order as {@code codepoints}.
+	 * @param bitmap           The atlas, one byte per pixel. Must be a direct buffer, and must not be modified afterwards.
+	 * @param kerningPairs     The first and second codepoint of every kerning pair.
+	 * @param kerningAmounts   The kerning of every pair, in the same order as {@code kerningPairs}.
+	 */
+	public BakedFont(String name, int fontHeight, float height, float ascent, float descent, float lineGap, boolean sdf, int subpixelVariants, int textureWidth, int textureHeight, float packingEfficiency, int[] codepoints, int[] glyphIndices, float[] metrics, ByteBuffer bitmap, int[] kerningPairs, float[] kerningAmounts) {
+		if (subpixelVariants < 1 || codepoints.length % subpixelVariants != 0) throw new IllegalArgumentException("invalid subpixelVariants");
+		if (glyphIndices.length != codepoints.length) throw new IllegalArgumentException("glyphIndices.length != codepoints.length");
+		if (metrics.length != codepoints.length * STRIDE) throw new IllegalArgumentException("metrics.length != codepoints.length * STRIDE");
+		if (kerningPairs.length != kerningAmounts.length * 2) throw new IllegalArgumentException("kerningPairs.length != kerningAmounts.length * 2");
+		if (bitmap.remaining() < textureWidth * textureHeight) throw new IllegalArgumentException("bitmap smaller than the texture");
+
+		this.name = name;
+		this.fontHeight = fontHeight;
+		this.height = height;
+		this.ascent = ascent;
+		this.descent = descent;
+		this.lineGap = lineGap;
+		this.sdf = sdf;
+		this.subpixelVariants = subpixelVariants;
+		this.textureWidth = textureWidth;
+		this.textureHeight = textureHeight;
+		this.packingEfficiency = packingEfficiency;
+		this.codepoints = codepoints.clone();
+		this.glyphIndices = glyphIndices.clone();
+		this.metrics = metrics.clone();
+		this.bitmap = bitmap.asReadOnlyBuffer();
+		this.kerningPairs = kerningPairs.clone();
+		this.kerningAmounts = kerningAmounts.clone();
+	}
+
+	public @NotNull String getName() {
+		return this.name;
+	}
+
+	public int getFontHeight() {
+		return this.fontHeight;
+	}
+
+	/**
+	 * @return The height of the tallest glyph.
+	 */
+	public float getHeight() {
+		return this.height;
+	}
+
+	public float getAscent() {
+		return this.ascent;
+	}
+
+	public float getDescent() {
+		return this.descent;
+	}
+
+	public float getLineGap() {
+		return this.lineGap;
+	}
+
+	public boolean isSDF() {
+		return this.sdf;
+	}
+
+	/**
+	 * @return The amount of horizontal subpixel positions every glyph was rasterized at.
+	 * @see IFont#getSubpixelVariants()
+	 */
+	public int getSubpixelVariants() {
+		return this.subpixelVariants;
+	}
+
+	public int getTextureWidth() {
+		return this.textureWidth;
+	}
+
+	public int getTextureHeight() {
+		return this.textureHeight;
+	}
+
+	/**
+	 * @return The fraction of the bitmap covered by glyphs, from 0 to 1.
+	 */
+	public float getPackingEfficiency() {
+		return this.packingEfficiency;
+	}
+
+	/**
+	 * @return The amount of glyphs, counting every subpixel variant.
+	 */
+	public int getGlyphCount() {
+		return this.codepoints.length;
+	}
+
+	/**
+	 * @return The codepoint of the glyph at {@code index}.
+	 */
+	public int getCodepoint(int index) {
+		return this.codepoints[index];
+	}
+
+	/**
+	 * @return The index in the font file of the glyph at {@code index}, or 0 if the font doesn't have its codepoint.
+	 * @see IFont#getGlyphIndex(int)
+	 */
+	public int getGlyphIndex(int index) {
+		return this.glyphIndices[index];
+	}
+
+	/**
+	 * @param index The index of the glyph.
+	 * @param field The metric, like {@link #ADVANCE}.
+	 */
+	public float getMetric(int index, int field) {
+		return this.metrics[index * STRIDE + field];
+	}
+
+	/**
+	 * @return A copy of the metrics of every glyph, {@link #STRIDE} floats each.
+	 */
+	public float[] getMetrics() {
+		return this.metrics.clone();
+	}
+
+	/**
+	 * @return The amount of kerning pairs.
+	 */
+	public int getKerningCount() {
+		return this.kerningAmounts.length;
+	}
+
+	public int getKerningFirst(int index) {
+		return this.kerningPairs[index * 2];
+	}
+
+	public int getKerningSecond(int index) {
+		return this.kerningPairs[index * 2 + 1];
+	}
+
+	/**
+	 * @return The kerning to add to the advance of the first codepoint of the pair, before any scale is applied.
+	 */
+	public float getKerningAmount(int index) {
+		return this.kerningAmounts[index];
+	}
+
+	/**
+	 * @return A read-only view of the atlas bitmap, one byte per pixel.
+	 */
+	public @NotNull ByteBuffer getBitmap() {
+		return this.bitmap.duplicate();
+	}
+}
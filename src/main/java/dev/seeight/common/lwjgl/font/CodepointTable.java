@@ -0,0 +1,238 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import java.util.Arrays;
+
+/**
+ * Maps codepoints to integers (usually glyph indices) without boxing them.<p>
+ * Codepoints lower than the dense size (by default, the Latin-1 range) are stored directly in an array.
+ * Any other codepoint is stored in an open-addressing table using linear probing.
+ *
+ * @author C8FF
+ */
+public class CodepointTable {
+	/**
+	 * Returned by {@link #get(int)} when there isn't any value for the codepoint.
+	 */
+	public static final int MISSING = -1;
+
+	/**
+	 * Covers ASCII and Latin-1.
+	 */
+	public static final int DEFAULT_DENSE_SIZE = 0x100;
+
+	private static final int EMPTY_KEY = -1;
+	private static final int MIN_SPARSE_CAPACITY = 16;
+
+	/**
+	 * Values of the codepoints lower than its length. Filled with {@link #MISSING}.
+	 */
+	private final int[] dense;
+	/**
+	 * Codepoints of the sparse table. Empty slots are {@link #EMPTY_KEY}.
+	 */
+	private int[] keys;
+	/**
+	 * Values of the sparse table, in the same position as their key.
+	 */
+	private int[] values;
+	/**
+	 * Amount of entries in the sparse table.
+	 */
+	private int sparseSize;
+	/**
+	 * Amount of entries in the whole table.
+	 */
+	private int size;
+
+	public CodepointTable() {
+		this(DEFAULT_DENSE_SIZE);
+	}
+
+	/**
+	 * @param denseSize The codepoints lower than this value are stored in a plain array.
+	 */
+	public CodepointTable(int denseSize) {
+		if (denseSize < 0) throw new IllegalArgumentException("denseSize < 0");
+
+		this.dense = new int[denseSize];
+		Arrays.fill(this.dense, MISSING);
+
+		this.keys = new int[MIN_SPARSE_CAPACITY];
+		this.values = new int[MIN_SPARSE_CAPACITY];
+		Arrays.fill(this.keys, EMPTY_KEY);
+	}
+
+	/**
+	 * @return The value of the {@code codepoint}, or {@link #MISSING} if there isn't any.
+	 */
+	public int get(int codepoint) {
+		// Negative codepoints would match the empty slots of the sparse table.
+		if (codepoint < 0) return MISSING;
+		if (codepoint < this.dense.length) {
+			return this.dense[codepoint];
+		}
+
+		int[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = hash(codepoint) & mask;
+		while (true) {
+			int key = keys[i];
+			if (key == codepoint) return this.values[i];
+			if (key == EMPTY_KEY) return MISSING;
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return True if there is a value for the {@code codepoint}.
+	 */
+	public boolean contains(int codepoint) {
+		return this.get(codepoint) != MISSING;
+	}
+
+	/**
+	 * Sets the value of a codepoint, replacing any previous one.
+	 *
+	 * @param codepoint The codepoint. Cannot be negative.
+	 * @param value     The value. Cannot be {@link #MISSING}.
+	 */
+	public void put(int codepoint, int value) {
+		if (codepoint < 0) throw new IllegalArgumentException("codepoint < 0");
+		if (value == MISSING) throw new IllegalArgumentException("value cannot be MISSING");
+
+		if (codepoint < this.dense.length) {
+			if (this.dense[codepoint] == MISSING) this.size++;
+			this.dense[codepoint] = value;
+			return;
+		}
+
+		// Keep the load factor under 0.5, so probes stay short.
+		if ((this.sparseSize + 1) * 2 > this.keys.length) {
+			this.rehash(this.keys.length * 2);
+		}
+
+		int mask = this.keys.length - 1;
+		int i = hash(codepoint) & mask;
+		while (true) {
+			int key = this.keys[i];
+			if (key == codepoint) {
+				this.values[i] = value;
+				return;
+			}
+			if (key == EMPTY_KEY) {
+				this.keys[i] = codepoint;
+				this.values[i] = value;
+				this.sparseSize++;
+				this.size++;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Removes the value of a codepoint.
+	 *
+	 * @return True if there was a value for the codepoint.
+	 */
+	public boolean remove(int codepoint) {
+		if (codepoint < 0) return false;
+
+		if (codepoint < this.dense.length) {
+			if (this.dense[codepoint] == MISSING) return false;
+			this.dense[codepoint] = MISSING;
+			this.size--;
+			return true;
+		}
+
+		int mask = this.keys.length - 1;
+		int i = hash(codepoint) & mask;
+		while (this.keys[i] != codepoint) {
+			if (this.keys[i] == EMPTY_KEY) return false;
+			i = (i + 1) & mask;
+		}
+
+		// Shift back the entries after the removed one, so no probe sequence is broken.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			int key = this.keys[j];
+			if (key == EMPTY_KEY) break;
+
+			int home = hash(key) & mask;
+			boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!between) {
+				this.keys[i] = key;
+				this.values[i] = this.values[j];
+				i = j;
+			}
+		}
+		this.keys[i] = EMPTY_KEY;
+		this.sparseSize--;
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Removes every entry of the table.
+	 */
+	public void clear() {
+		Arrays.fill(this.dense, MISSING);
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.sparseSize = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * @return The amount of codepoints in the table.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		Arrays.fill(this.keys, EMPTY_KEY);
+
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			int key = oldKeys[j];
+			if (key == EMPTY_KEY) continue;
+
+			int i = hash(key) & mask;
+			while (this.keys[i] != EMPTY_KEY) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = key;
+			this.values[i] = oldValues[j];
+		}
+	}
+
+	private static int hash(int codepoint) {
+		// Fibonacci hashing spreads runs of close codepoints (like CJK blocks) across the table.
+		int h = codepoint * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+import dev.seeight.renderer.renderer.Texture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Chains several fonts, drawing each codepoint with the first font that has it.
+ * Useful for text that mixes scripts, like Latin and CJK, or symbols from a separate font.<p>
+ * Each codepoint is resolved once and the answer is cached, including codepoints that none of the fonts have.
+ * The metrics of the whole font (size, height, ascent, etc.) are the ones of the first font.<p>
+ * The glyphs stay in the textures of the chained fonts. Renderers find the font of each glyph with
+ * {@link #getGlyphFont(int)}, so this font doesn't have a glyph store of its own.
+ *
+ * @author C8FF
+ */
+public class CompositeFont implements IFont {
+	/**
+	 * Stored in {@link #resolved} for codepoints that none of the fonts have.
+	 */
+	private static final int NOT_FOUND = -2;
+
+	private final IFont[] fonts;
+	private final String name;
+	/**
+	 * The index of the font that draws each codepoint.
+	 */
+	private final CodepointTable resolved;
+
+	/**
+	 * @param fonts The fonts, in order of preference.
+	 */
+	public CompositeFont(IFont... fonts) {
+		if (fonts.length == 0) throw new IllegalArgumentException("At least one font is required");
+
+		this.fonts = fonts.clone();
+		this.resolved = new CodepointTable();
+
+		StringBuilder name = new StringBuilder();
+		for (IFont font : this.fonts) {
+			if (name.length() != 0) name.append(", ");
+			name.append(font.getName());
+		}
+		this.name = name.toString();
+	}
+
+	/**
+	 * @return The index of the font that draws the codepoint, or {@link #NOT_FOUND}.
+	 */
+	private int resolve(int codepoint) {
+		int index = this.resolved.get(codepoint);
+		if (index != CodepointTable.MISSING) {
+			return index;
+		}
+
+		index = NOT_FOUND;
+		for (int i = 0; i < this.fonts.length; i++) {
+			if (this.fonts[i].hasGlyph(codepoint)) {
+				index = i;
+				break;
+			}
+		}
+
+		if (codepoint >= 0) {
+			this.resolved.put(codepoint, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Forgets which font draws each codepoint. Needed if the glyphs of the chained fonts change.
+	 */
+	public void clearCache() {
+		this.resolved.clear();
+	}
+
+	/**
+	 * @return The amount of chained fonts.
+	 */
+	public int getFontCount() {
+		return this.fonts.length;
+	}
+
+	/**
+	 * @return The chained font at {@code index}.
+	 */
+	public @NotNull IFont getFont(int index) {
+		return this.fonts[index];
+	}
+
+	@Override
+	public @NotNull IFont getGlyphFont(int codepoint) {
+		int index = this.resolve(codepoint);
+		return index == NOT_FOUND ? this.fonts[0] : this.fonts[index];
+	}
+
+	@Override
+	public boolean hasGlyph(int codepoint) {
+		return this.resolve(codepoint) != NOT_FOUND;
+	}
+
+	@Override
+	public @Nullable CharacterData getCharacterData(int codepoint) {
+		int index = this.resolve(codepoint);
+		return index == NOT_FOUND ? null : this.fonts[index].getCharacterData(codepoint);
+	}
+
+	/**
+	 * The slots of the glyphs belong to the chained fonts. Use {@link #getGlyphFont(int)} instead.
+	 *
+	 * @return {@code -1}.
+	 */
+	@Override
+	public int getGlyphSlot(int codepoint) {
+		return -1;
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * The index belongs to the font of {@link #getGlyphFont(int)}.
+	 */
+	@Override
+	public int getGlyphIndex(int codepoint) {
+		int index = this.resolve(codepoint);
+		return index == NOT_FOUND ? 0 : this.fonts[index].getGlyphIndex(codepoint);
+	}
+
+	/**
+	 * The glyph indices belong to the chained fonts. Use {@link #getGlyphFont(int)} instead.
+	 *
+	 * @return {@code -1}.
+	 */
+	@Override
+	public int getGlyphSlotByIndex(int glyphIndex) {
+		return -1;
+	}
+
+	/**
+	 * The glyph indices belong to the chained fonts. Use {@link #getGlyphFont(int)} instead.
+	 *
+	 * @return {@code null}.
+	 */
+	@Override
+	public @Nullable CharacterData getCharacterDataByIndex(int glyphIndex) {
+		return null;
+	}
+
+	@Override
+	public @NotNull Texture getTexture() {
+		return this.fonts[0].getTexture();
+	}
+
+	@Override
+	public @NotNull Texture getTexture(int page) {
+		return this.fonts[0].getTexture(page);
+	}
+
+	@Override
+	public int getPageCount() {
+		return this.fonts[0].getPageCount();
+	}
+
+	@Override
+	public boolean isSDF() {
+		return this.fonts[0].isSDF();
+	}
+
+	@Override
+	public @NotNull String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int getSize() {
+		return this.fonts[0].getSize();
+	}
+
+	@Override
+	public float getHeight() {
+		return this.fonts[0].getHeight();
+	}
+
+	@Override
+	public float getLineGap() {
+		return this.fonts[0].getLineGap();
+	}
+
+	@Override
+	public float getAscent() {
+		return this.fonts[0].getAscent();
+	}
+
+	@Override
+	public float getDescent() {
+		return this.fonts[0].getDescent();
+	}
+}
@@ -0,0 +1,648 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+import dev.seeight.common.lwjgl.util.IOUtil;
+import dev.seeight.common.lwjgl.util.SkylinePacker;
+import dev.seeight.renderer.renderer.Texture;
+import dev.seeight.renderer.renderer.gl.components.GLTexture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.stb.STBTTFontinfo;
+import org.lwjgl.stb.STBTruetype;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A TrueType font that rasterizes each glyph the first time it's requested, instead of baking a fixed range up front.
+ * This allows using any codepoint of the font (like CJK) without paying the startup time and texture memory of baking
+ * all of them.<p>
+ * The font keeps the TTF data and its {@link STBTTFontinfo} alive. New glyphs are rasterized into a CPU copy of the
+ * atlas, and only the rectangle that changed is uploaded into the texture. The upload happens when the texture is
+ * requested with {@link #getTexture(int)} (which the renderers do once per batch), or explicitly with {@link #flush()}.
+ * Known strings can be rasterized ahead of time with {@link #warmUp(CharSequence)}.<p>
+ * The glyphs are stored in one or more fixed-size pages, each one with its own texture. When every page is full and
+ * the page budget is reached, the least recently used page is cleared and reused. Call {@link #nextFrame()} once per
+ * frame so the font knows which pages are still in use; pages used in the current frame, or retained with
+ * {@link #retainPage(int)}, are never cleared. A glyph that can't be placed is treated as an unsupported character
+ * until a page can be cleared.
+ *
+ * @author C8FF
+ */
+public class DynamicTTFFont implements IFont {
+	/**
+	 * Empty pixels between glyphs, so they don't bleed into each other.
+	 */
+	private static final int PADDING = 1;
+
+	private final ByteBuffer ttf;
+	private final boolean ownsData;
+	private final STBTTFontinfo info;
+
+	private final int pageWidth;
+	private final int pageHeight;
+	private final int maxPages;
+	private final List<Page> pages;
+
+	/**
+	 * The glyph index of every codepoint looked up so far, 0 for the ones the font doesn't have. It never changes, so
+	 * every codepoint is only looked up once.
+	 */
+	private final CodepointTable glyphIndices;
+	/**
+	 * The slot of every rasterized glyph index.
+	 */
+	private final CodepointTable glyphSlots;
+	private final int glyphCount;
+	private final GlyphStore glyphStore;
+	private CharacterData[] glyphs;
+	/**
+	 * The page of each slot, or -1 for glyphs without pixels.
+	 */
+	private int[] glyphPages;
+	/**
+	 * Slots released by cleared pages, reused before growing the store.
+	 */
+	private int[] freeSlots;
+	private int freeSlotCount;
+
+	private final String name;
+	private final float pixelScale;
+	private final float scale;
+	private final float fontOffset;
+	private final int fontHeight;
+	private final float height;
+	private final float ascent;
+	private final float descent;
+	private final float lineGap;
+
+	private final int[] position = new int[2];
+	private long frame;
+
+	public DynamicTTFFont(InputStream ttfFile, int fontHeight) throws IOException {
+		this(ttfFile, 512, 512, 1, fontHeight, 1F);
+	}
+
+	public DynamicTTFFont(InputStream ttfFile, int atlasWidth, int atlasHeight, int fontHeight, float scale) throws IOException {
+		this(ttfFile, atlasWidth, atlasHeight, 1, fontHeight, scale);
+	}
+
+	/**
+	 * @param ttfFile    The TTF data.
+	 * @param pageWidth  The width of each page.
+	 * @param pageHeight The height of each page.
+	 * @param maxPages   The maximum amount of pages (and textures) the font can have.
+	 * @param fontHeight The height of the font in pixels.
+	 * @param scale      The scale applied to the metrics of the font.
+	 */
+	public DynamicTTFFont(InputStream ttfFile, int pageWidth, int pageHeight, int maxPages, int fontHeight, float scale) throws IOException {
+		this(IOUtil.nativeBufferFrom(ttfFile), true, pageWidth, pageHeight, maxPages, fontHeight, scale);
+	}
+
+	/**
+	 * Memory-maps the TTF file instead of reading it. The OS only pages in the parts of the file that are used.
+	 *
+	 * @param ttfFile The path of the TTF file.
+	 * @see #DynamicTTFFont(InputStream, int, int, int, int, float)
+	 */
+	public DynamicTTFFont(Path ttfFile, int pageWidth, int pageHeight, int maxPages, int fontHeight, float scale) throws IOException {
+		this(IOUtil.map(ttfFile), false, pageWidth, pageHeight, maxPages, fontHeight, scale);
+	}
+
+	/**
+	 * @param ttf      The TTF data, kept for the lifetime of the font.
+	 * @param ownsData Whether {@code ttf} was allocated with {@link MemoryUtil#memAlloc(int)} and is freed by {@link #delete()}.
+	 */
+	private DynamicTTFFont(ByteBuffer ttf, boolean ownsData, int pageWidth, int pageHeight, int maxPages, int fontHeight, float scale) {
+		this.ttf = ttf;
+		this.ownsData = ownsData;
+		this.info = STBTTFontinfo.create();
+		if (maxPages < 1 || !STBTruetype.stbtt_InitFont(this.info, this.ttf)) {
+			if (ownsData) MemoryUtil.memFree(ttf);
+			if (maxPages < 1) throw new IllegalArgumentException("maxPages < 1");
+			throw new RuntimeException("failed to init font");
+		}
+
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+		this.maxPages = maxPages;
+		this.pages = new ArrayList<>(maxPages);
+		this.pages.add(this.createPage());
+
+		this.glyphIndices = new CodepointTable();
+		this.glyphSlots = new CodepointTable();
+		this.glyphCount = TTFFont.getGlyphCount(this.info);
+		this.glyphStore = new GlyphStore(128);
+		this.glyphs = new CharacterData[128];
+		this.glyphPages = new int[128];
+		this.freeSlots = new int[16];
+
+		this.name = TTFFont.getFontName(this.info, fontHeight);
+		this.pixelScale = STBTruetype.stbtt_ScaleForPixelHeight(this.info, fontHeight);
+		this.scale = scale;
+
+		float ascent;
+		float descent;
+		float lineGap;
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			IntBuffer _ascent = stack.mallocInt(1);
+			IntBuffer _descent = stack.mallocInt(1);
+			IntBuffer _lineGap = stack.mallocInt(1);
+			STBTruetype.stbtt_GetFontVMetrics(this.info, _ascent, _descent, _lineGap);
+			ascent = _ascent.get(0) * this.pixelScale;
+			descent = _descent.get(0) * this.pixelScale;
+			lineGap = _lineGap.get(0) * this.pixelScale;
+		}
+
+		// Center the font, same as TTFFont.
+		this.fontOffset = (float) Math.ceil(ascent + descent);
+
+		this.fontHeight = (int) (fontHeight * scale);
+		this.height = (ascent - descent) * scale;
+		this.ascent = ascent * scale;
+		this.descent = descent * scale;
+		this.lineGap = lineGap * scale;
+	}
+
+	/**
+	 * Rasterizes every codepoint of {@code text} that hasn't been rasterized yet, and uploads them.
+	 */
+	public void warmUp(CharSequence text) {
+		text.codePoints().forEach(this::getGlyphSlot);
+		this.flush();
+	}
+
+	/**
+	 * Rasterizes every codepoint in the range that hasn't been rasterized yet, and uploads them.
+	 *
+	 * @param firstChar      The first codepoint.
+	 * @param characterCount The amount of codepoints.
+	 */
+	public void warmUp(int firstChar, int characterCount) {
+		for (int i = 0; i < characterCount; i++) {
+			this.getGlyphSlot(firstChar + i);
+		}
+		this.flush();
+	}
+
+	/**
+	 * Starts a new frame. Pages that aren't used from now on can be cleared to make space for new glyphs.
+	 */
+	public void nextFrame() {
+		this.frame++;
+	}
+
+	/**
+	 * Uploads the regions of the pages that changed since the last upload. Does nothing if nothing changed.
+	 */
+	public void flush() {
+		for (Page page : this.pages) {
+			page.flush();
+		}
+	}
+
+	/**
+	 * @return The amount of pages currently allocated.
+	 */
+	@Override
+	public int getPageCount() {
+		return this.pages.size();
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Changes every time a glyph is rasterized into the page, or the page is cleared.
+	 */
+	@Override
+	public int getTextureRevision(int page) {
+		return this.pages.get(page).revision;
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Retained pages are never cleared, even if they weren't used in this frame. If every page is retained and full,
+	 * new glyphs are treated as unsupported characters.
+	 */
+	@Override
+	public void retainPage(int page) {
+		this.pages.get(page).retained++;
+	}
+
+	@Override
+	public void releasePage(int page) {
+		Page p = this.pages.get(page);
+		if (p.retained == 0) throw new IllegalStateException("Page " + page + " isn't retained");
+		p.retained--;
+	}
+
+	/**
+	 * Deletes the textures of the font, and frees the TTF data if it was read from a stream.
+	 * The font cannot be used after calling this method.
+	 */
+	public void delete() {
+		// There's always a page until the font is deleted.
+		if (this.pages.isEmpty()) {
+			return;
+		}
+
+		for (Page page : this.pages) {
+			GL11.glDeleteTextures(page.texture.getId());
+		}
+		this.pages.clear();
+		if (this.ownsData) {
+			MemoryUtil.memFree(this.ttf);
+		}
+	}
+
+	/**
+	 * Rasterizes a glyph into a page and registers it.
+	 *
+	 * @param glyphIndex The index of the glyph in the font file.
+	 * @return The slot of the glyph, or -1 if there isn't space.
+	 */
+	private int loadGlyph(int glyphIndex) {
+		int x0, y0, x1, y1;
+		int advance, leftSideBearing;
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			IntBuffer ix0 = stack.mallocInt(1);
+			IntBuffer iy0 = stack.mallocInt(1);
+			IntBuffer ix1 = stack.mallocInt(1);
+			IntBuffer iy1 = stack.mallocInt(1);
+			STBTruetype.stbtt_GetGlyphBitmapBox(this.info, glyphIndex, this.pixelScale, this.pixelScale, ix0, iy0, ix1, iy1);
+			x0 = ix0.get(0);
+			y0 = iy0.get(0);
+			x1 = ix1.get(0);
+			y1 = iy1.get(0);
+
+			IntBuffer _advanceWidth = stack.mallocInt(1);
+			IntBuffer _leftSideBearing = stack.mallocInt(1);
+			STBTruetype.stbtt_GetGlyphHMetrics(this.info, glyphIndex, _advanceWidth, _leftSideBearing);
+			advance = _advanceWidth.get(0);
+			leftSideBearing = _leftSideBearing.get(0);
+		}
+
+		int width = x1 - x0;
+		int height = y1 - y0;
+
+		// Find space in a page. Empty glyphs (like spaces) don't need any.
+		int pageIndex = -1;
+		int px = 0;
+		int py = 0;
+		if (width > 0 && height > 0) {
+			pageIndex = this.allocate(width, height);
+			if (pageIndex == -1) {
+				return -1;
+			}
+
+			Page page = this.pages.get(pageIndex);
+			px = this.position[0];
+			py = this.position[1];
+			TTFFont.rasterizeGlyphIndex(this.info, page.bitmap, this.pageWidth, px, py, width, height, this.pixelScale, glyphIndex);
+			page.markDirty(px, py, px + width, py + height);
+			page.addGlyph(glyphIndex);
+		}
+
+		float u = (float) px / this.pageWidth;
+		float v = (float) py / this.pageHeight;
+		float u2 = (float) (px + width) / this.pageWidth;
+		float v2 = (float) (py + height) / this.pageHeight;
+
+		CharacterData data = new CharacterData(width, height, leftSideBearing * this.pixelScale, y0 + this.fontOffset, advance * this.pixelScale, u, v, u2, v2, this.scale);
+		data.x = px;
+		data.y = py;
+		if (this.freeSlotCount > 0) {
+			data.slot = this.freeSlots[--this.freeSlotCount];
+			this.glyphStore.set(data.slot, data.renderOriginX, data.renderOriginY, data.renderWidth, data.renderHeight, data.renderAdvance, u, v, u2, v2);
+		} else {
+			data.slot = this.glyphStore.add(data.renderOriginX, data.renderOriginY, data.renderWidth, data.renderHeight, data.renderAdvance, u, v, u2, v2);
+		}
+
+		if (data.slot >= this.glyphs.length) {
+			this.glyphs = Arrays.copyOf(this.glyphs, this.glyphs.length * 2);
+			this.glyphPages = Arrays.copyOf(this.glyphPages, this.glyphPages.length * 2);
+		}
+		this.glyphs[data.slot] = data;
+		this.glyphPages[data.slot] = pageIndex;
+		this.glyphSlots.put(glyphIndex, data.slot);
+		return data.slot;
+	}
+
+	/**
+	 * Finds space for a glyph, creating or clearing a page if necessary. The position is written into {@link #position}.
+	 *
+	 * @return The index of the page, or -1 if there isn't any space left.
+	 */
+	private int allocate(int width, int height) {
+		for (int i = 0; i < this.pages.size(); i++) {
+			if (this.pages.get(i).packer.pack(width, height, this.position)) {
+				return i;
+			}
+		}
+
+		if (this.pages.size() < this.maxPages) {
+			Page page = this.createPage();
+			this.pages.add(page);
+			return page.packer.pack(width, height, this.position) ? this.pages.size() - 1 : -1;
+		}
+
+		// Clear the least recently used page, unless it's being used in this frame or retained.
+		int oldest = -1;
+		for (int i = 0; i < this.pages.size(); i++) {
+			Page page = this.pages.get(i);
+			if (page.lastUsedFrame < this.frame && page.retained == 0 && (oldest == -1 || page.lastUsedFrame < this.pages.get(oldest).lastUsedFrame)) {
+				oldest = i;
+			}
+		}
+		if (oldest == -1) {
+			return -1;
+		}
+
+		this.evict(oldest);
+		return this.pages.get(oldest).packer.pack(width, height, this.position) ? oldest : -1;
+	}
+
+	/**
+	 * Removes every glyph of a page, so they are rasterized again the next time they are used.
+	 */
+	private void evict(int pageIndex) {
+		Page page = this.pages.get(pageIndex);
+		for (int i = 0; i < page.glyphCount; i++) {
+			int glyphIndex = page.glyphIndices[i];
+			int slot = this.glyphSlots.get(glyphIndex);
+			this.glyphSlots.remove(glyphIndex);
+			this.glyphs[slot] = null;
+
+			if (this.freeSlotCount == this.freeSlots.length) {
+				this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+			}
+			this.freeSlots[this.freeSlotCount++] = slot;
+		}
+
+		page.clear();
+	}
+
+	private Page createPage() {
+		ByteBuffer bitmap = BufferUtils.createByteBuffer(this.pageWidth * this.pageHeight);
+
+		// Create an empty texture. The glyphs are uploaded as they are rasterized.
+		int texID = GL11.glGenTextures();
+		int previous = GL11.glGetInteger(GL11.GL_TEXTURE_BINDING_2D);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, this.pageWidth, this.pageHeight, 0, GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, bitmap);
+		this.applyTextureParameters();
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, previous);
+
+		return new Page(new GLTexture(texID, this.pageWidth, this.pageHeight), bitmap, new SkylinePacker(this.pageWidth, this.pageHeight, PADDING));
+	}
+
+	protected void applyTextureParameters() {
+		// Same as TTFFont, the glyphs are stored in the alpha channel.
+		GL11.glTexParameteriv(GL11.GL_TEXTURE_2D, GL33.GL_TEXTURE_SWIZZLE_RGBA, new int[] {
+				GL11.GL_ONE,
+				GL11.GL_ONE,
+				GL11.GL_ONE,
+				GL11.GL_ALPHA,
+		});
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Returns the texture of the first page, after uploading any glyph rasterized into it since the last upload.
+	 */
+	@Override
+	public @NotNull Texture getTexture() {
+		return this.getTexture(0);
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Uploads any glyph rasterized into the page since the last upload before returning.
+	 */
+	@Override
+	public @NotNull Texture getTexture(int page) {
+		Page p = this.pages.get(page);
+		p.flush();
+		return p.texture;
+	}
+
+	@Override
+	public @NotNull String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int getSize() {
+		return this.fontHeight;
+	}
+
+	@Override
+	public float getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public float getLineGap() {
+		return this.lineGap;
+	}
+
+	@Override
+	public float getAscent() {
+		return this.ascent;
+	}
+
+	@Override
+	public float getDescent() {
+		return this.descent;
+	}
+
+	@Override
+	public @Nullable CharacterData getCharacterData(int codepoint) {
+		int slot = this.getGlyphSlot(codepoint);
+		return slot == -1 ? null : this.glyphs[slot];
+	}
+
+	@Override
+	public @Nullable CharacterData getCharacterDataByIndex(int glyphIndex) {
+		int slot = this.getGlyphSlotByIndex(glyphIndex);
+		return slot == -1 ? null : this.glyphs[slot];
+	}
+
+	@Override
+	public @NotNull GlyphStore getGlyphStore() {
+		return this.glyphStore;
+	}
+
+	@Override
+	public boolean hasGlyph(int codepoint) {
+		// Don't rasterize the glyph only to know if it exists.
+		return this.getGlyphIndex(codepoint) != 0;
+	}
+
+	@Override
+	public int getGlyphIndex(int codepoint) {
+		if (codepoint < 0) return 0;
+
+		int glyphIndex = this.glyphIndices.get(codepoint);
+		if (glyphIndex == CodepointTable.MISSING) {
+			glyphIndex = STBTruetype.stbtt_FindGlyphIndex(this.info, codepoint);
+			this.glyphIndices.put(codepoint, glyphIndex);
+		}
+		return glyphIndex;
+	}
+
+	@Override
+	public int getGlyphSlot(int codepoint) {
+		return this.getGlyphSlotByIndex(this.getGlyphIndex(codepoint));
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Any glyph of the font can be rasterized, including the ones that don't belong to any codepoint.
+	 */
+	@Override
+	public int getGlyphSlotByIndex(int glyphIndex) {
+		// The missing glyph is treated as an unsupported character.
+		if (glyphIndex <= 0 || glyphIndex >= this.glyphCount) {
+			return -1;
+		}
+
+		int slot = this.glyphSlots.get(glyphIndex);
+		if (slot == CodepointTable.MISSING) {
+			slot = this.loadGlyph(glyphIndex);
+		}
+		if (slot < 0) {
+			return -1;
+		}
+
+		// Keep the page alive while it's being used.
+		int page = this.glyphPages[slot];
+		if (page != -1) {
+			this.pages.get(page).lastUsedFrame = this.frame;
+		}
+		return slot;
+	}
+
+	@Override
+	public int getGlyphPage(int slot) {
+		return this.glyphPages[slot];
+	}
+
+	/**
+	 * A texture with its CPU copy and the glyphs stored in it.
+	 */
+	private static class Page {
+		private final Texture texture;
+		private final ByteBuffer bitmap;
+		private final SkylinePacker packer;
+
+		/**
+		 * The glyph indices rasterized into the page.
+		 */
+		private int[] glyphIndices = new int[64];
+		private int glyphCount;
+		private long lastUsedFrame;
+		/**
+		 * The amount of {@link #retainPage(int)} calls that weren't released.
+		 */
+		private int retained;
+		private int revision;
+
+		// The region of the bitmap that hasn't been uploaded yet.
+		private int dirtyMinX = Integer.MAX_VALUE;
+		private int dirtyMinY = Integer.MAX_VALUE;
+		private int dirtyMaxX;
+		private int dirtyMaxY;
+
+		private Page(Texture texture, ByteBuffer bitmap, SkylinePacker packer) {
+			this.texture = texture;
+			this.bitmap = bitmap;
+			this.packer = packer;
+		}
+
+		private void addGlyph(int glyphIndex) {
+			if (this.glyphCount == this.glyphIndices.length) {
+				this.glyphIndices = Arrays.copyOf(this.glyphIndices, this.glyphIndices.length * 2);
+			}
+			this.glyphIndices[this.glyphCount++] = glyphIndex;
+		}
+
+		private void markDirty(int minX, int minY, int maxX, int maxY) {
+			this.dirtyMinX = Math.min(this.dirtyMinX, minX);
+			this.dirtyMinY = Math.min(this.dirtyMinY, minY);
+			this.dirtyMaxX = Math.max(this.dirtyMaxX, maxX);
+			this.dirtyMaxY = Math.max(this.dirtyMaxY, maxY);
+			this.revision++;
+		}
+
+		private void clear() {
+			this.packer.clear();
+			this.glyphCount = 0;
+
+			// Erase the old glyphs, including the padding around the new ones.
+			MemoryUtil.memSet(this.bitmap, 0);
+			this.markDirty(0, 0, this.texture.getWidth(), this.texture.getHeight());
+		}
+
+		private void flush() {
+			if (this.dirtyMaxX <= this.dirtyMinX || this.dirtyMaxY <= this.dirtyMinY) {
+				return;
+			}
+
+			int previous = GL11.glGetInteger(GL11.GL_TEXTURE_BINDING_2D);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, this.texture.getId());
+
+			// Read the rectangle straight from the full bitmap.
+			GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+			GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, this.texture.getWidth());
+			GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, this.dirtyMinX);
+			GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, this.dirtyMinY);
+			GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, this.dirtyMinX, this.dirtyMinY, this.dirtyMaxX - this.dirtyMinX, this.dirtyMaxY - this.dirtyMinY, GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, this.bitmap);
+
+			// Restore the defaults.
+			GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, 0);
+			GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+			GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, 0);
+			GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, previous);
+
+			this.dirtyMinX = Integer.MAX_VALUE;
+			this.dirtyMinY = Integer.MAX_VALUE;
+			this.dirtyMaxX = 0;
+			this.dirtyMaxY = 0;
+		}
+	}
+}
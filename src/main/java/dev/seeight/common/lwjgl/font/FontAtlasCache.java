@@ -0,0 +1,334 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores baked fonts on disk, so the glyphs don't have to be rasterized again on the next run.<p>
+ * Each entry is keyed by a checksum of the TTF data and the parameters of {@link TTFFont#bake}. Cached entries are
+ * memory-mapped and their bitmap is uploaded straight from the mapping. Entries whose header or checksum don't match
+ * are deleted and baked again. The scale of the font isn't part of the key, as it is only applied to the metrics
+ * after baking, so every scale of the same font shares an entry.
+ * <pre>{@code
+ * FontAtlasCache cache = new FontAtlasCache(Path.of("cache", "fonts"));
+ * TTFFont font = new TTFFont(cache.getOrBake(ttf, 512, 512, 24, 95, 32, false), 1F);
+ * }</pre>
+ *
+ * @author C8FF
+ */
+public class FontAtlasCache {
+	private static final int MAGIC = 0x43414346; // "FCAC"
+	private static final int VERSION = 4;
+	private static final int HEADER_SIZE = 52;
+	private static final int FLAG_SDF = 1;
+
+	private final Path directory;
+
+	/**
+	 * @param directory The directory of the cache files. It is created when the first entry is stored.
+	 */
+	public FontAtlasCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads a font from the cache, or bakes and stores it if it isn't cached.
+	 * Failing to store the entry doesn't prevent the font from being returned.
+	 *
+	 * @see TTFFont#bake(ByteBuffer, int, int, int, int, int, boolean)
+	 */
+	public @NotNull BakedFont getOrBake(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf) {
+		return this.getOrBake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, 1);
+	}
+
+	/**
+	 * Loads a font from the cache, or bakes and stores it if it isn't cached.
+	 * Failing to store the entry doesn't prevent the font from being returned.
+	 *
+	 * @see TTFFont#bake(ByteBuffer, int, int, int, int, int, boolean, int, int)
+	 */
+	public @NotNull BakedFont getOrBake(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants) {
+		Key key = new Key(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, subpixelVariants);
+
+		BakedFont baked = this.load(key);
+		if (baked != null) {
+			return baked;
+		}
+
+		baked = TTFFont.bake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, subpixelVariants, TTFFont.DEFAULT_MAX_TEXTURE_SIZE);
+		try {
+			this.store(key, baked);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return baked;
+	}
+
+	/**
+	 * @return The cached font, or {@code null} if it isn't cached or the entry is stale.
+	 */
+	public @Nullable BakedFont load(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants) {
+		return this.load(new Key(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, subpixelVariants));
+	}
+
+	/**
+	 * Stores a baked font, replacing any previous entry with the same key.
+	 * The parameters must be the ones used to bake the font.
+	 */
+	public void store(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants, BakedFont baked) throws IOException {
+		this.store(new Key(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, subpixelVariants), baked);
+	}
+
+	private @Nullable BakedFont load(Key key) {
+		Path path = this.directory.resolve(key.getFileName());
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+
+		BakedFont baked;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			baked = read(channel, key);
+		} catch (IOException | RuntimeException e) {
+			baked = null;
+		}
+
+		if (baked == null) {
+			// Stale or corrupt.
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException ignored) {
+			}
+		}
+		return baked;
+	}
+
+	private static @Nullable BakedFont read(FileChannel channel, Key key) throws IOException {
+		long size = channel.size();
+		if (size < HEADER_SIZE) return null;
+
+		// Check the header before mapping the file, so stale entries are never mapped.
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) return null;
+		}
+		header.flip();
+		if (header.getInt() != MAGIC || header.getInt() != VERSION || !key.matches(header)) return null;
+
+		int payloadLength = header.getInt();
+		int payloadCrc = header.getInt();
+		if (payloadLength < 0 || size != HEADER_SIZE + (long) payloadLength) return null;
+
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, payloadLength);
+		CRC32C crc = new CRC32C();
+		crc.update(mapped.duplicate());
+		if ((int) crc.getValue() != payloadCrc) return null;
+
+		ByteBuffer payload = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		byte[] name = new byte[payload.getInt()];
+		payload.get(name);
+		float height = payload.getFloat();
+		float ascent = payload.getFloat();
+		float descent = payload.getFloat();
+		float lineGap = payload.getFloat();
+		float packingEfficiency = payload.getFloat();
+		int textureWidth = payload.getInt();
+		int textureHeight = payload.getInt();
+		int glyphCount = payload.getInt();
+
+		int[] codepoints = new int[glyphCount];
+		payload.asIntBuffer().get(codepoints);
+		payload.position(payload.position() + glyphCount * Integer.BYTES);
+		int[] glyphIndices = new int[glyphCount];
+		payload.asIntBuffer().get(glyphIndices);
+		payload.position(payload.position() + glyphCount * Integer.BYTES);
+		float[] metrics = new float[glyphCount * BakedFont.STRIDE];
+		payload.asFloatBuffer().get(metrics);
+		payload.position(payload.position() + metrics.length * Float.BYTES);
+
+		int kerningCount = payload.getInt();
+		int[] kerningPairs = new int[kerningCount * 2];
+		payload.asIntBuffer().get(kerningPairs);
+		payload.position(payload.position() + kerningPairs.length * Integer.BYTES);
+		float[] kerningAmounts = new float[kerningCount];
+		payload.asFloatBuffer().get(kerningAmounts);
+		payload.position(payload.position() + kerningAmounts.length * Float.BYTES);
+
+		if (payload.remaining() != textureWidth * textureHeight) return null;
+		ByteBuffer bitmap = payload.slice();
+
+		return new BakedFont(new String(name, StandardCharsets.UTF_8), key.fontHeight, height, ascent, descent, lineGap, key.sdf, key.subpixelVariants, textureWidth, textureHeight, packingEfficiency, codepoints, glyphIndices, metrics, bitmap, kerningPairs, kerningAmounts);
+	}
+
+	private void store(Key key, BakedFont baked) throws IOException {
+		byte[] name = baked.getName().getBytes(StandardCharsets.UTF_8);
+		int glyphCount = baked.getGlyphCount();
+		ByteBuffer bitmap = baked.getBitmap();
+		int bitmapSize = baked.getTextureWidth() * baked.getTextureHeight();
+		int kerningCount = baked.getKerningCount();
+		int payloadLength = Integer.BYTES + name.length + 5 * Float.BYTES + 3 * Integer.BYTES + glyphCount * 2 * Integer.BYTES + glyphCount * BakedFont.STRIDE * Float.BYTES
+				+ Integer.BYTES + kerningCount * (2 * Integer.BYTES + Float.BYTES) + bitmapSize;
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(HEADER_SIZE);
+		buffer.putInt(name.length);
+		buffer.put(name);
+		buffer.putFloat(baked.getHeight());
+		buffer.putFloat(baked.getAscent());
+		buffer.putFloat(baked.getDescent());
+		buffer.putFloat(baked.getLineGap());
+		buffer.putFloat(baked.getPackingEfficiency());
+		buffer.putInt(baked.getTextureWidth());
+		buffer.putInt(baked.getTextureHeight());
+		buffer.putInt(glyphCount);
+		for (int i = 0; i < glyphCount; i++) {
+			buffer.putInt(baked.getCodepoint(i));
+		}
+		for (int i = 0; i < glyphCount; i++) {
+			buffer.putInt(baked.getGlyphIndex(i));
+		}
+		for (float metric : baked.getMetrics()) {
+			buffer.putFloat(metric);
+		}
+		buffer.putInt(kerningCount);
+		for (int i = 0; i < kerningCount; i++) {
+			buffer.putInt(baked.getKerningFirst(i));
+			buffer.putInt(baked.getKerningSecond(i));
+		}
+		for (int i = 0; i < kerningCount; i++) {
+			buffer.putFloat(baked.getKerningAmount(i));
+		}
+		buffer.put(bitmap.limit(bitmap.position() + bitmapSize));
+
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.array(), HEADER_SIZE, payloadLength);
+
+		buffer.position(0);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		key.write(buffer);
+		buffer.putInt(payloadLength);
+		buffer.putInt((int) crc.getValue());
+		buffer.position(0);
+
+		// Write to a temporary file first, so a crash never leaves a partial entry behind.
+		Files.createDirectories(this.directory);
+		Path path = this.directory.resolve(key.getFileName());
+		Path temp = Files.createTempFile(this.directory, key.getFileName(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			try {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Everything that changes the result of {@link TTFFont#bake}.
+	 */
+	private static class Key {
+		private final int ttfLength;
+		private final int ttfCrc;
+		private final int textureWidth;
+		private final int textureHeight;
+		private final int fontHeight;
+		private final int characterCount;
+		private final int firstChar;
+		private final boolean sdf;
+		private final int subpixelVariants;
+
+		Key(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants) {
+			CRC32C crc = new CRC32C();
+			crc.update(ttf.duplicate());
+
+			this.ttfLength = ttf.remaining();
+			this.ttfCrc = (int) crc.getValue();
+			this.textureWidth = textureWidth;
+			this.textureHeight = textureHeight;
+			this.fontHeight = fontHeight;
+			this.characterCount = characterCount;
+			this.firstChar = firstChar;
+			this.sdf = sdf;
+			this.subpixelVariants = subpixelVariants;
+		}
+
+		/**
+		 * Compares the key with the one at the position of {@code header}.
+		 */
+		boolean matches(ByteBuffer header) {
+			return header.getInt() == this.ttfLength
+					&& header.getInt() == this.ttfCrc
+					&& header.getInt() == this.textureWidth
+					&& header.getInt() == this.textureHeight
+					&& header.getInt() == this.fontHeight
+					&& header.getInt() == this.characterCount
+					&& header.getInt() == this.firstChar
+					&& header.getInt() == (this.sdf ? FLAG_SDF : 0)
+					&& header.getInt() == this.subpixelVariants;
+		}
+
+		void write(ByteBuffer header) {
+			header.putInt(this.ttfLength);
+			header.putInt(this.ttfCrc);
+			header.putInt(this.textureWidth);
+			header.putInt(this.textureHeight);
+			header.putInt(this.fontHeight);
+			header.putInt(this.characterCount);
+			header.putInt(this.firstChar);
+			header.putInt(this.sdf ? FLAG_SDF : 0);
+			header.putInt(this.subpixelVariants);
+		}
+
+		String getFileName() {
+			long hash = this.ttfCrc & 0xFFFFFFFFL;
+			hash = hash * 31 + this.ttfLength;
+			hash = hash * 31 + this.textureWidth;
+			hash = hash * 31 + this.textureHeight;
+			hash = hash * 31 + this.fontHeight;
+			hash = hash * 31 + this.characterCount;
+			hash = hash * 31 + this.firstChar;
+			hash = hash * 31 + (this.sdf ? FLAG_SDF : 0);
+			hash = hash * 31 + this.subpixelVariants;
+			return String.format("%016x.fontcache", hash);
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.util.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.stb.STBTTFontinfo;
+import org.lwjgl.stb.STBTruetype;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hands out shared fonts, so every window, panel or subsystem using the same font uses the same texture.<p>
+ * Fonts are identified by their source (a file or a resource), size, range of codepoints and mode. Every call to
+ * {@code acquire} returns the same {@link TTFFont} for the same parameters, and must be paired with a call to
+ * {@link #release(IFont)}. The texture of a font is deleted when its last user releases it.<p>
+ * The TTF data of a source is loaded and parsed once, and shared by every font created from it. It's freed when
+ * the last of those fonts is released.<p>
+ * Textures can be shared by several windows if their contexts are shared (see {@link dev.seeight.common.lwjgl.Window#createWindow(dev.seeight.common.lwjgl.Window)}).
+ * Fonts must be acquired and released while one of those contexts is current.
+ *
+ * @author C8FF
+ */
+public class FontRegistry {
+	/**
+	 * The initial size of the textures. They grow if the glyphs don't fit.
+	 */
+	private static final int TEXTURE_SIZE = 512;
+
+	private final Map<String, Face> faces = new HashMap<>();
+	private final Map<Key, Entry> entries = new HashMap<>();
+	private final Map<IFont, Entry> entriesByFont = new IdentityHashMap<>();
+
+	/**
+	 * Returns the font of a TTF file, creating it if no one is using it. The file is memory-mapped.
+	 *
+	 * @param ttfFile          The path of the TTF file.
+	 * @param fontHeight       The height of the font in pixels.
+	 * @param firstChar        The first codepoint of the font.
+	 * @param characterCount   The amount of codepoints of the font.
+	 * @param sdf              True for signed distance fields instead of bitmaps.
+	 * @param subpixelVariants The amount of horizontal subpixel positions of every glyph. Must be 1 with {@code sdf}.
+	 * @param scale            The scale applied to the metrics of the font.
+	 * @see TTFFont#bake(ByteBuffer, int, int, int, int, int, boolean, int, int)
+	 */
+	public synchronized @NotNull TTFFont acquire(Path ttfFile, int fontHeight, int firstChar, int characterCount, boolean sdf, int subpixelVariants, float scale) throws IOException {
+		Path path = ttfFile.toAbsolutePath().normalize();
+		String source = path.toUri().toString();
+
+		Face face = this.faces.get(source);
+		if (face == null) {
+			face = new Face(source, IOUtil.map(path), false);
+		}
+
+		return this.acquire(face, fontHeight, firstChar, characterCount, sdf, subpixelVariants, scale);
+	}
+
+	/**
+	 * Returns the font of a TTF resource, creating it if no one is using it.
+	 *
+	 * @see #acquire(Path, int, int, int, boolean, int, float)
+	 */
+	public synchronized @NotNull TTFFont acquire(Class<?> clazz, String resourceName, int fontHeight, int firstChar, int characterCount, boolean sdf, int subpixelVariants, float scale) throws IOException {
+		URL url = clazz.getResource(resourceName);
+		if (url == null) {
+			throw new FileNotFoundException(resourceName);
+		}
+		String source = url.toString();
+
+		Face face = this.faces.get(source);
+		if (face == null) {
+			try (InputStream stream = url.openStream()) {
+				face = new Face(source, IOUtil.nativeBufferFrom(stream), true);
+			}
+		}
+
+		return this.acquire(face, fontHeight, firstChar, characterCount, sdf, subpixelVariants, scale);
+	}
+
+	private TTFFont acquire(Face face, int fontHeight, int firstChar, int characterCount, boolean sdf, int subpixelVariants, float scale) {
+		Key key = new Key(face.source, fontHeight, firstChar, characterCount, sdf, subpixelVariants, scale);
+		Entry entry = this.entries.get(key);
+		if (entry != null) {
+			entry.references++;
+			return entry.font;
+		}
+
+		this.faces.putIfAbsent(face.source, face);
+		TTFFont font;
+		try {
+			font = new TTFFont(TTFFont.bake(face.info, TEXTURE_SIZE, TEXTURE_SIZE, fontHeight, characterCount, firstChar, sdf, subpixelVariants, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE)), scale);
+		} catch (RuntimeException e) {
+			if (face.fonts == 0) {
+				this.faces.remove(face.source);
+				face.free();
+			}
+			throw e;
+		}
+
+		entry = new Entry(key, face, font);
+		face.fonts++;
+		this.entries.put(key, entry);
+		this.entriesByFont.put(font, entry);
+		return font;
+	}
+
+	/**
+	 * Stops using a font returned by this registry. When no one uses it anymore, its texture is deleted, and so is
+	 * its TTF data if no other font uses it.
+	 *
+	 * @throws IllegalArgumentException If the font wasn't created by this registry, or was already released by every user.
+	 */
+	public synchronized void release(IFont font) {
+		Entry entry = this.entriesByFont.get(font);
+		if (entry == null) throw new IllegalArgumentException(font.getName() + " isn't in use");
+
+		if (--entry.references > 0) {
+			return;
+		}
+
+		this.entries.remove(entry.key);
+		this.entriesByFont.remove(font);
+		entry.font.delete();
+
+		Face face = entry.face;
+		if (--face.fonts == 0) {
+			this.faces.remove(face.source);
+			face.free();
+		}
+	}
+
+	/**
+	 * @return The amount of users of a font, or 0 if it isn't in use.
+	 */
+	public synchronized int getReferenceCount(IFont font) {
+		Entry entry = this.entriesByFont.get(font);
+		return entry == null ? 0 : entry.references;
+	}
+
+	/**
+	 * @return The amount of fonts in use.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Deletes every font and frees every TTF data, no matter how many users they have.
+	 */
+	public synchronized void clear() {
+		for (Entry entry : this.entries.values()) {
+			entry.font.delete();
+		}
+		for (Face face : this.faces.values()) {
+			face.free();
+		}
+		this.entries.clear();
+		this.entriesByFont.clear();
+		this.faces.clear();
+	}
+
+	/**
+	 * Identifies a font: its source, size, range and mode.
+	 */
+	private record Key(String source, int fontHeight, int firstChar, int characterCount, boolean sdf, int subpixelVariants, float scale) {
+	}
+
+	private static class Entry {
+		private final Key key;
+		private final Face face;
+		private final TTFFont font;
+		private int references = 1;
+
+		private Entry(Key key, Face face, TTFFont font) {
+			this.key = key;
+			this.face = face;
+			this.font = font;
+		}
+	}
+
+	/**
+	 * The TTF data of a source, parsed once for every font created from it.
+	 */
+	private static class Face {
+		private final String source;
+		private final ByteBuffer ttf;
+		/**
+		 * Whether {@link #ttf} was allocated with {@link MemoryUtil#memAlloc(int)}. Mapped files are unmapped by the GC.
+		 */
+		private final boolean ownsData;
+		private final STBTTFontinfo info;
+		/**
+		 * The amount of fonts created from this face that are in use.
+		 */
+		private int fonts;
+
+		private Face(String source, ByteBuffer ttf, boolean ownsData) {
+			this.source = source;
+			this.ttf = ttf;
+			this.ownsData = ownsData;
+			this.info = STBTTFontinfo.malloc();
+			if (!STBTruetype.stbtt_InitFont(this.info, ttf)) {
+				this.free();
+				throw new RuntimeException("failed to init font " + source);
+			}
+		}
+
+		private void free() {
+			this.info.free();
+			if (this.ownsData) {
+				MemoryUtil.memFree(this.ttf);
+			}
+		}
+	}
+}
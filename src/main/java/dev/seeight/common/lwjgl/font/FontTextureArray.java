@@ -0,0 +1,281 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.renderer.renderer.Texture;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL43;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code GL_TEXTURE_2D_ARRAY} holding the textures of several fonts, one layer per texture page.
+ * Renderers can then draw text of every registered font with a single texture bind and draw call, telling
+ * the layer of each glyph per vertex.<p>
+ * The pages are copied into the layers with {@code glCopyImageSubData} (OpenGL 4.3), so the fonts keep their
+ * own textures. Pages smaller than a layer are placed at its top left corner, and their texture coordinates
+ * must be scaled with {@link #getScaleU(int)} and {@link #getScaleV(int)}.<p>
+ * Distance fields need different filtering and a different shader, so an array only holds fonts of one kind.
+ * The glyphs of a {@link DynamicTTFFont} change after registering it. {@link #sync()} copies the pages that changed
+ * (see {@link IFont#getTextureRevision(int)}), and the renderers call it before drawing with the array.
+ *
+ * @author C8FF
+ */
+public class FontTextureArray {
+	private final int id;
+	private final int width;
+	private final int height;
+	private final int maxLayers;
+	private final boolean sdf;
+	/**
+	 * The layer of every page of each registered font.
+	 */
+	private final Map<IFont, int[]> layers = new IdentityHashMap<>();
+	/**
+	 * The registered fonts, in the order they were registered.
+	 */
+	private final List<IFont> fonts = new ArrayList<>();
+	/**
+	 * The size of the page stored in every layer, as a fraction of the size of the layer.
+	 */
+	private final float[] scaleU;
+	private final float[] scaleV;
+	/**
+	 * The {@link IFont#getTextureRevision(int) revision} of the page stored in every layer when it was copied.
+	 */
+	private final int[] revisions;
+	private int layerCount;
+
+	/**
+	 * Creates an empty array.
+	 *
+	 * @param width     The width of every layer. Pages wider than this cannot be registered.
+	 * @param height    The height of every layer. Pages taller than this cannot be registered.
+	 * @param maxLayers The amount of layers.
+	 * @param sdf       Whether the array holds signed distance fields.
+	 */
+	public FontTextureArray(int width, int height, int maxLayers, boolean sdf) {
+		if (width <= 0 || height <= 0 || maxLayers <= 0) throw new IllegalArgumentException("invalid size");
+
+		this.width = width;
+		this.height = height;
+		this.maxLayers = maxLayers;
+		this.sdf = sdf;
+		this.scaleU = new float[maxLayers];
+		this.scaleV = new float[maxLayers];
+		this.revisions = new int[maxLayers];
+
+		this.id = GL11.glGenTextures();
+		int previous = GL11.glGetInteger(GL30.GL_TEXTURE_BINDING_2D_ARRAY);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, this.id);
+		GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, GL11.GL_RGBA8, width, height, maxLayers, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+		// Same parameters as the textures of the fonts.
+		GL11.glTexParameteriv(GL30.GL_TEXTURE_2D_ARRAY, GL33.GL_TEXTURE_SWIZZLE_RGBA, new int[] {
+				GL11.GL_ONE,
+				GL11.GL_ONE,
+				GL11.GL_ONE,
+				GL11.GL_ALPHA,
+		});
+		int filter = sdf ? GL11.GL_LINEAR : GL11.GL_NEAREST;
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, filter);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, filter);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, previous);
+	}
+
+	/**
+	 * Copies every page of a font into free layers. The chained fonts of a {@link CompositeFont} are registered instead
+	 * of the composite itself. Fonts that are already registered are skipped.
+	 *
+	 * @throws IllegalArgumentException If the font isn't of the same kind as the array, or a page is bigger than a layer.
+	 * @throws IllegalStateException    If there aren't enough free layers.
+	 */
+	public void register(IFont font) {
+		if (font instanceof CompositeFont composite) {
+			for (int i = 0; i < composite.getFontCount(); i++) {
+				this.register(composite.getFont(i));
+			}
+			return;
+		}
+
+		if (this.layers.containsKey(font)) {
+			return;
+		}
+		if (font.isSDF() != this.sdf) throw new IllegalArgumentException("The font " + font.getName() + (this.sdf ? " isn't" : " is") + " a signed distance field font");
+
+		int pageCount = font.getPageCount();
+		if (this.layerCount + pageCount > this.maxLayers) throw new IllegalStateException("Not enough free layers for " + font.getName());
+
+		int[] pages = new int[pageCount];
+		for (int page = 0; page < pageCount; page++) {
+			Texture texture = font.getTexture(page);
+			if (texture.getWidth() > this.width || texture.getHeight() > this.height) {
+				throw new IllegalArgumentException("The texture of " + font.getName() + " is bigger than a layer");
+			}
+		}
+		for (int page = 0; page < pageCount; page++) {
+			pages[page] = this.layerCount++;
+		}
+
+		this.layers.put(font, pages);
+		this.fonts.add(font);
+		this.copyPages(font, pages);
+	}
+
+	/**
+	 * Copies the pages of a registered font again, for fonts whose textures changed after registering them.
+	 * New pages of the font are placed in free layers.
+	 *
+	 * @throws IllegalStateException If the font isn't registered, or there aren't enough free layers for the new pages.
+	 */
+	public void refresh(IFont font) {
+		int[] pages = this.layers.get(font);
+		if (pages == null) throw new IllegalStateException(font.getName() + " isn't registered");
+
+		int pageCount = font.getPageCount();
+		if (pageCount > pages.length) {
+			if (this.layerCount + pageCount - pages.length > this.maxLayers) throw new IllegalStateException("Not enough free layers for " + font.getName());
+
+			int[] grown = new int[pageCount];
+			System.arraycopy(pages, 0, grown, 0, pages.length);
+			for (int page = pages.length; page < pageCount; page++) {
+				grown[page] = this.layerCount++;
+			}
+			pages = grown;
+			this.layers.put(font, pages);
+		}
+
+		this.copyPages(font, pages);
+	}
+
+	/**
+	 * Copies the pages of every registered font that changed since they were copied, and places new pages in free
+	 * layers. Pages of fonts that don't change are only compared.
+	 *
+	 * @throws IllegalStateException If there aren't enough free layers for the new pages.
+	 */
+	public void sync() {
+		for (int i = 0; i < this.fonts.size(); i++) {
+			IFont font = this.fonts.get(i);
+			int[] pages = this.layers.get(font);
+			if (font.getPageCount() > pages.length) {
+				this.refresh(font);
+				continue;
+			}
+
+			for (int page = 0; page < pages.length; page++) {
+				if (this.revisions[pages[page]] != font.getTextureRevision(page)) {
+					this.copyPage(font, page, pages[page]);
+				}
+			}
+		}
+	}
+
+	private void copyPages(IFont font, int[] pages) {
+		for (int page = 0; page < pages.length; page++) {
+			this.copyPage(font, page, pages[page]);
+		}
+	}
+
+	private void copyPage(IFont font, int page, int layer) {
+		// Getting the texture uploads the glyphs that are still pending in dynamic fonts.
+		Texture texture = font.getTexture(page);
+		GL43.glCopyImageSubData(texture.getId(), GL11.GL_TEXTURE_2D, 0, 0, 0, 0, this.id, GL30.GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, texture.getWidth(), texture.getHeight(), 1);
+		this.scaleU[layer] = (float) texture.getWidth() / this.width;
+		this.scaleV[layer] = (float) texture.getHeight() / this.height;
+		this.revisions[layer] = font.getTextureRevision(page);
+	}
+
+	/**
+	 * @return The layer holding a page of a font, or {@code -1} if the font isn't registered.
+	 */
+	public int getLayer(IFont font, int page) {
+		int[] pages = this.layers.get(font);
+		if (pages == null || page >= pages.length) {
+			return -1;
+		}
+		return pages[page];
+	}
+
+	/**
+	 * @return Whether the font was registered.
+	 */
+	public boolean contains(IFont font) {
+		return this.layers.containsKey(font);
+	}
+
+	/**
+	 * @return The factor to multiply the U coordinates of the page in {@code layer} by.
+	 */
+	public float getScaleU(int layer) {
+		return this.scaleU[layer];
+	}
+
+	/**
+	 * @return The factor to multiply the V coordinates of the page in {@code layer} by.
+	 */
+	public float getScaleV(int layer) {
+		return this.scaleV[layer];
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return The amount of layers in use.
+	 */
+	public int getLayerCount() {
+		return this.layerCount;
+	}
+
+	public int getMaxLayers() {
+		return this.maxLayers;
+	}
+
+	public boolean isSDF() {
+		return this.sdf;
+	}
+
+	/**
+	 * Deletes the texture. The fonts and their own textures are not affected.
+	 */
+	public void delete() {
+		GL11.glDeleteTextures(this.id);
+		this.layers.clear();
+		this.fonts.clear();
+		this.layerCount = 0;
+	}
+}
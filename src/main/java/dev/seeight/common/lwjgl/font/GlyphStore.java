@@ -0,0 +1,122 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import java.util.Arrays;
+
+/**
+ * Packs the render metrics of every glyph of a font into a single float array.
+ * Each glyph takes {@link #STRIDE} consecutive floats starting at {@code slot * STRIDE}, so reading a glyph
+ * while building quads touches one or two cache lines instead of a whole object.<p>
+ * The values are already scaled by the font, and the UV coordinates are stored as floats, ready to be uploaded.
+ *
+ * @author C8FF
+ */
+public class GlyphStore {
+	/**
+	 * Horizontal offset from the pen position to the left of the quad.
+	 */
+	public static final int OFFSET_X = 0;
+	/**
+	 * Vertical offset from the pen position to the top of the quad.
+	 */
+	public static final int OFFSET_Y = 1;
+	public static final int WIDTH = 2;
+	public static final int HEIGHT = 3;
+	/**
+	 * How much the pen moves after the glyph.
+	 */
+	public static final int ADVANCE = 4;
+	public static final int U = 5;
+	public static final int V = 6;
+	public static final int U2 = 7;
+	public static final int V2 = 8;
+	/**
+	 * The amount of floats used by each glyph.
+	 */
+	public static final int STRIDE = 9;
+
+	private float[] data;
+	private int size;
+
+	public GlyphStore() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity The amount of glyphs that can be added before growing.
+	 */
+	public GlyphStore(int capacity) {
+		this.data = new float[Math.max(capacity, 1) * STRIDE];
+	}
+
+	/**
+	 * Appends a glyph to the store.
+	 *
+	 * @return The slot of the glyph.
+	 */
+	public int add(float offsetX, float offsetY, float width, float height, float advance, float u, float v, float u2, float v2) {
+		int slot = this.size;
+		if ((slot + 1) * STRIDE > this.data.length) {
+			this.data = Arrays.copyOf(this.data, this.data.length * 2);
+		}
+		this.size++;
+
+		this.set(slot, offsetX, offsetY, width, height, advance, u, v, u2, v2);
+		return slot;
+	}
+
+	/**
+	 * Replaces the metrics of an existing glyph.
+	 */
+	public void set(int slot, float offsetX, float offsetY, float width, float height, float advance, float u, float v, float u2, float v2) {
+		if (slot < 0 || slot >= this.size) throw new IndexOutOfBoundsException("slot " + slot + " out of bounds (" + this.size + ")");
+
+		float[] data = this.data;
+		int o = slot * STRIDE;
+		data[o + OFFSET_X] = offsetX;
+		data[o + OFFSET_Y] = offsetY;
+		data[o + WIDTH] = width;
+		data[o + HEIGHT] = height;
+		data[o + ADVANCE] = advance;
+		data[o + U] = u;
+		data[o + V] = v;
+		data[o + U2] = u2;
+		data[o + V2] = v2;
+	}
+
+	/**
+	 * The backing array. Hot loops should index it directly with {@code slot * STRIDE + FIELD}.
+	 * The returned array can be replaced by a bigger one when glyphs are added.
+	 */
+	public float[] getData() {
+		return this.data;
+	}
+
+	/**
+	 * @return The amount of glyphs in the store.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public float getAdvance(int slot) {
+		return this.data[slot * STRIDE + ADVANCE];
+	}
+}
@@ -37,6 +37,54 @@ public interface IFont {
 	@NotNull
 	Texture getTexture();
 
+	/**
+	 * The texture of a page. Fonts that store their glyphs in more than one texture
+	 * split them into pages, and {@link #getGlyphPage(int)} tells which one holds each glyph.
+	 *
+	 * @param page The index of the page.
+	 */
+	@NotNull
+	default Texture getTexture(int page) {
+		return this.getTexture();
+	}
+
+	/**
+	 * @return The amount of texture pages of the font, usable with {@link #getTexture(int)}.
+	 */
+	default int getPageCount() {
+		return 1;
+	}
+
+	/**
+	 * @return A number that changes every time the pixels of a page change, so copies of the page (like the layers of
+	 * a {@link FontTextureArray}) know when to copy it again. Fonts whose textures don't change after loading return 0.
+	 */
+	default int getTextureRevision(int page) {
+		return 0;
+	}
+
+	/**
+	 * Keeps the glyphs of a page where they are until {@link #releasePage(int)} is called, for quads that stay in the
+	 * GPU (like the ones of a {@link dev.seeight.common.lwjgl.fontrenderer.TextMesh}). Calls can be nested.
+	 * Fonts whose glyphs never move don't need to do anything.
+	 */
+	default void retainPage(int page) {
+	}
+
+	/**
+	 * Undoes one call to {@link #retainPage(int)}.
+	 */
+	default void releasePage(int page) {
+	}
+
+	/**
+	 * @return True if the texture holds signed distance fields instead of coverage bitmaps.
+	 * The distance is stored in the alpha channel, and the edge of the glyph is at {@code 0.5}.
+	 */
+	default boolean isSDF() {
+		return false;
+	}
+
 	/**
 	 * The name of the string.
 	 */
@@ -75,4 +123,107 @@ public interface IFont {
 	 */
 	@Nullable
 	CharacterData getCharacterData(int codepoint);
+
+	/**
+	 * @return True if the font has a glyph for the codepoint. Unlike {@link #getCharacterData(int)}, it shouldn't
+	 * need to create the glyph.
+	 */
+	default boolean hasGlyph(int codepoint) {
+		return this.getCharacterData(codepoint) != null;
+	}
+
+	/**
+	 * The font that holds the glyph of a codepoint. Fonts made of other fonts (see {@link CompositeFont}) return the
+	 * one that draws the codepoint, and renderers must use the glyph data, texture and pages of that font.
+	 *
+	 * @return The font that draws the codepoint. This font if it doesn't delegate to other fonts.
+	 */
+	@NotNull
+	default IFont getGlyphFont(int codepoint) {
+		return this;
+	}
+
+	/**
+	 * The packed render metrics of the glyphs of this font. The glyphs are indexed by {@link #getGlyphSlot(int)}.
+	 * Renderers should prefer this over {@link #getCharacterData(int)} when building quads.
+	 *
+	 * @return The store, or {@code null} if the font doesn't keep one.
+	 */
+	@Nullable
+	default GlyphStore getGlyphStore() {
+		return null;
+	}
+
+	/**
+	 * Gets the slot of a codepoint inside {@link #getGlyphStore()}.
+	 *
+	 * @return The slot, or {@code -1} if the codepoint isn't supported.
+	 */
+	default int getGlyphSlot(int codepoint) {
+		CharacterData data = this.getCharacterData(codepoint);
+		return data == null ? -1 : data.slot;
+	}
+
+	/**
+	 * The index of the glyph of a codepoint in the font file, the way shapers like HarfBuzz identify glyphs (see
+	 * {@link dev.seeight.common.lwjgl.font.shaping.ShapedRun ShapedRun}). Fonts that aren't made from a font file, like
+	 * {@link AtlasFont}, use the codepoint itself.
+	 *
+	 * @return The glyph index, or {@code 0} (the missing glyph) if the font doesn't have the codepoint.
+	 */
+	default int getGlyphIndex(int codepoint) {
+		return this.hasGlyph(codepoint) ? codepoint : 0;
+	}
+
+	/**
+	 * Gets the slot of a glyph index inside {@link #getGlyphStore()}. Glyphs that don't belong to any codepoint, like
+	 * ligatures, only have a slot if the font can rasterize them (see {@link DynamicTTFFont}).
+	 *
+	 * @param glyphIndex The glyph index, from {@link #getGlyphIndex(int)} or a shaper.
+	 * @return The slot, or {@code -1} if the glyph isn't available.
+	 */
+	default int getGlyphSlotByIndex(int glyphIndex) {
+		return this.getGlyphSlot(glyphIndex);
+	}
+
+	/**
+	 * Gets the information of a glyph index, like {@link #getCharacterData(int)} does for codepoints.
+	 *
+	 * @param glyphIndex The glyph index, from {@link #getGlyphIndex(int)} or a shaper.
+	 */
+	@Nullable
+	default CharacterData getCharacterDataByIndex(int glyphIndex) {
+		return this.getCharacterData(glyphIndex);
+	}
+
+	/**
+	 * The amount of horizontal subpixel positions every glyph is rasterized at. When higher than one, the variants of a
+	 * glyph take the slots right after {@link #getGlyphSlot(int)}: the variant {@code i} is shifted {@code i / variants}
+	 * pixels to the right, and is meant to be drawn at a whole pixel.
+	 *
+	 * @see dev.seeight.common.lwjgl.fontrenderer.IFontRenderer#getSubpixelVariant(float, int)
+	 */
+	default int getSubpixelVariants() {
+		return 1;
+	}
+
+	/**
+	 * Gets the page of the texture that holds a glyph. Renderers must not batch glyphs of different pages together.
+	 *
+	 * @param slot The slot of the glyph, from {@link #getGlyphSlot(int)}.
+	 * @return The page to be used with {@link #getTexture(int)}, or {@code -1} if the glyph doesn't have any pixels.
+	 */
+	default int getGlyphPage(int slot) {
+		return 0;
+	}
+
+	/**
+	 * The kerning between the pairs of codepoints of this font, already scaled to the size of the font.
+	 *
+	 * @return The table, or {@code null} if the font doesn't have any kerning.
+	 */
+	@Nullable
+	default KerningTable getKerningTable() {
+		return null;
+	}
 }
@@ -0,0 +1,160 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import java.util.Arrays;
+
+/**
+ * Maps pairs of codepoints to the kerning between them, without boxing them.<p>
+ * The pairs are stored in an open-addressing table using linear probing. Codepoints that never start a pair
+ * are rejected with a bit set before probing, so most lookups of a string don't touch the table.
+ *
+ * @author C8FF
+ */
+public class KerningTable {
+	private static final long EMPTY_KEY = -1L;
+	private static final int MIN_CAPACITY = 16;
+	/**
+	 * Amount of codepoints covered by {@link #firsts}. Higher codepoints always probe the table.
+	 */
+	private static final int FIRSTS_SIZE = 0x10000;
+
+	/**
+	 * The pairs, as the first codepoint in the upper 32 bits and the second in the lower ones.
+	 */
+	private long[] keys;
+	private float[] values;
+	private int size;
+	/**
+	 * Set for every codepoint lower than {@link #FIRSTS_SIZE} that starts a pair.
+	 */
+	private final long[] firsts;
+
+	public KerningTable() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize The amount of pairs the table holds without growing.
+	 */
+	public KerningTable(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+
+		this.keys = new long[capacity];
+		this.values = new float[capacity];
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.firsts = new long[FIRSTS_SIZE / 64];
+	}
+
+	/**
+	 * @return The kerning to add to the advance of {@code first} when it's followed by {@code second}, or 0.
+	 */
+	public float get(int first, int second) {
+		if (first < 0 || second < 0) return 0;
+		if (first < FIRSTS_SIZE && (this.firsts[first >>> 6] & (1L << first)) == 0) return 0;
+
+		long pair = key(first, second);
+		long[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = hash(pair) & mask;
+		while (true) {
+			long key = keys[i];
+			if (key == pair) return this.values[i];
+			if (key == EMPTY_KEY) return 0;
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Sets the kerning of a pair, replacing any previous one.
+	 *
+	 * @param first  The first codepoint. Cannot be negative.
+	 * @param second The second codepoint. Cannot be negative.
+	 */
+	public void put(int first, int second, float kerning) {
+		if (first < 0 || second < 0) throw new IllegalArgumentException("negative codepoint");
+
+		if ((this.size + 1) * 2 > this.keys.length) {
+			this.rehash(this.keys.length * 2);
+		}
+
+		if (first < FIRSTS_SIZE) {
+			this.firsts[first >>> 6] |= 1L << first;
+		}
+
+		long pair = key(first, second);
+		int mask = this.keys.length - 1;
+		int i = hash(pair) & mask;
+		while (true) {
+			long key = this.keys[i];
+			if (key == pair) {
+				this.values[i] = kerning;
+				return;
+			}
+			if (key == EMPTY_KEY) {
+				this.keys[i] = pair;
+				this.values[i] = kerning;
+				this.size++;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return The amount of pairs in the table.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		float[] oldValues = this.values;
+
+		this.keys = new long[capacity];
+		this.values = new float[capacity];
+		Arrays.fill(this.keys, EMPTY_KEY);
+
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+			if (key == EMPTY_KEY) continue;
+
+			int i = hash(key) & mask;
+			while (this.keys[i] != EMPTY_KEY) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = key;
+			this.values[i] = oldValues[j];
+		}
+	}
+
+	private static long key(int first, int second) {
+		return ((long) first << 32) | second;
+	}
+
+	private static int hash(long pair) {
+		long h = pair * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+}
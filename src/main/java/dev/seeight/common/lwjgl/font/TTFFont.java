@@ -20,40 +20,72 @@ package dev.seeight.common.lwjgl.font;
 
 import dev.seeight.common.lwjgl.font.json.CharacterData;
 import dev.seeight.common.lwjgl.util.IOUtil;
+import dev.seeight.common.lwjgl.util.SkylinePacker;
 import dev.seeight.renderer.renderer.Texture;
 import dev.seeight.renderer.renderer.gl.components.GLTexture;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL33;
-import org.lwjgl.stb.STBTTAlignedQuad;
-import org.lwjgl.stb.STBTTBakedChar;
 import org.lwjgl.stb.STBTTFontinfo;
+import org.lwjgl.stb.STBTTKerningentry;
 import org.lwjgl.stb.STBTruetype;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.Pointer;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiConsumer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class TTFFont implements IFont {
-	private static STBTTFontinfo _tempInfo;
+	/**
+	 * The value of the SDF texture at the edge of the glyph.
+	 */
+	public static final int SDF_ON_EDGE = 128;
+	/**
+	 * The maximum size of the bitmap of {@link #bake(ByteBuffer, int, int, int, int, int, boolean)}.
+	 * Every OpenGL 3 implementation worth using supports it.
+	 */
+	public static final int DEFAULT_MAX_TEXTURE_SIZE = 4096;
+	/**
+	 * The kerning of {@code GPOS} can only be read pair by pair, so only the pairs of codepoints lower than this
+	 * (ASCII up to Latin Extended-B) are looked up, and baking larger ranges doesn't take quadratic time.
+	 */
+	public static final int KERNING_LOOKUP_LIMIT = 0x250;
+	private static final int GPOS_TAG = 0x47504F53; // "GPOS"
+	private static final int MAXP_TAG = 0x6D617870; // "maxp"
 
 	private final Texture texture;
-	private final Map<Integer, CharacterData> glyphs;
+	private final CodepointTable glyphIndices;
+	/**
+	 * The slot of every glyph index of the font file that was baked.
+	 */
+	private final CodepointTable fontGlyphSlots;
+	/**
+	 * The index in the font file of the glyph of every slot.
+	 */
+	private final int[] fontGlyphIndices;
+	private final CharacterData[] glyphs;
+	private final GlyphStore glyphStore;
+	private final KerningTable kerning;
 	private final String name;
 	private final int fontHeight;
 	private final float height;
 	private final float ascent;
 	private final float descent;
 	private final float lineGap;
+	private final boolean sdf;
+	private final int subpixelVariants;
+	private final float packingEfficiency;
 
 	public TTFFont(InputStream inputStream, int textureWidth, int textureHeight, int fontHeight) throws IOException {
 		this(inputStream, textureWidth, textureHeight, fontHeight, 95, 32, 1F);
@@ -63,33 +95,219 @@ public class TTFFont implements IFont {
 		this(inputStream, textureWidth, textureHeight, fontHeight, 95, 32, scale);
 	}
 
+	public TTFFont(InputStream ttfFile, int fontHeight) throws IOException {
+		this(ttfFile, 128, 128, fontHeight, 95, 32, 1F);
+	}
+
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a texture.
+	 *
+	 * @param ttfFile        The TTF data.
+	 * @param textureWidth   The initial width of the texture. The texture grows in powers of two if the glyphs don't fit.
+	 * @param textureHeight  The initial height of the texture. The texture grows in powers of two if the glyphs don't fit.
+	 * @param fontHeight     The height of the font in pixels.
+	 * @param characterCount The amount of codepoints to rasterize.
+	 * @param firstChar      The first codepoint to rasterize.
+	 * @param scale          The scale applied to the metrics of the font.
+	 * @throws IllegalStateException If the glyphs don't fit in the maximum texture size.
+	 */
 	public TTFFont(InputStream ttfFile, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, float scale) throws IOException {
-		ByteBuffer ttf = IOUtil.byteBufferFrom(ttfFile);
+		this(ttfFile, textureWidth, textureHeight, fontHeight, characterCount, firstChar, scale, false);
+	}
 
-		if (_tempInfo == null) {
-			_tempInfo = STBTTFontinfo.create();
-		}
-		if (!STBTruetype.stbtt_InitFont(_tempInfo, ttf)) {
-			throw new RuntimeException("failed to init font");
-		}
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a texture.
+	 * <p>
+	 * With {@code sdf}, the texture holds signed distance fields instead of coverage. Renderers that support them
+	 * (see {@link #isSDF()}) draw sharp edges at any scale, so a single font can be used for every size with
+	 * {@link dev.seeight.common.lwjgl.fontrenderer.IFontRenderer#setScale(float) setScale}.
+	 * A {@code fontHeight} between 32 and 64 is usually enough.
+	 *
+	 * @param ttfFile        The TTF data.
+	 * @param textureWidth   The initial width of the texture. The texture grows in powers of two if the glyphs don't fit.
+	 * @param textureHeight  The initial height of the texture. The texture grows in powers of two if the glyphs don't fit.
+	 * @param fontHeight     The height of the font in pixels.
+	 * @param characterCount The amount of codepoints to rasterize.
+	 * @param firstChar      The first codepoint to rasterize.
+	 * @param scale          The scale applied to the metrics of the font.
+	 * @param sdf            True to generate signed distance fields instead of bitmaps.
+	 * @throws IllegalStateException If the glyphs don't fit in the maximum texture size.
+	 */
+	public TTFFont(InputStream ttfFile, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, float scale, boolean sdf) throws IOException {
+		this(bakeStream(ttfFile, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf), scale);
+	}
 
-		// Create Texture
-		int texID = GL11.glGenTextures();
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a texture, memory-mapping the TTF file instead of reading it.
+	 *
+	 * @param ttfFile The path of the TTF file.
+	 * @see #TTFFont(InputStream, int, int, int, int, int, float, boolean)
+	 */
+	public TTFFont(Path ttfFile, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, float scale, boolean sdf) throws IOException {
+		this(bake(IOUtil.map(ttfFile), textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE)), scale);
+	}
 
-		// Allocate the character data
-		STBTTBakedChar.Buffer cdata = STBTTBakedChar.malloc(characterCount);
+	/**
+	 * Reads the TTF data into a native buffer that is freed as soon as the glyphs are rasterized.
+	 */
+	private static BakedFont bakeStream(InputStream ttfFile, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf) throws IOException {
+		ByteBuffer ttf = IOUtil.nativeBufferFrom(ttfFile);
+		try {
+			return bake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE));
+		} finally {
+			MemoryUtil.memFree(ttf);
+		}
+	}
+
+	/**
+	 * Uploads a font that was already rasterized, skipping the rasterization. Must be called on the OpenGL thread.
+	 *
+	 * @param baked The glyphs and bitmap of the font. See {@link #bake} and {@link FontAtlasCache}.
+	 * @param scale The scale applied to the metrics of the font.
+	 */
+	public TTFFont(BakedFont baked, float scale) {
+		this.sdf = baked.isSDF();
+		this.subpixelVariants = baked.getSubpixelVariants();
+		this.name = baked.getName();
+		this.packingEfficiency = baked.getPackingEfficiency();
+
+		int count = baked.getGlyphCount();
+		this.glyphIndices = new CodepointTable();
+		this.fontGlyphSlots = new CodepointTable();
+		this.fontGlyphIndices = new int[count];
+		this.glyphs = new CharacterData[count];
+		this.glyphStore = new GlyphStore(count);
+
+		int textureWidth = baked.getTextureWidth();
+		int textureHeight = baked.getTextureHeight();
+		for (int i = 0; i < count; i++) {
+			int px = (int) baked.getMetric(i, BakedFont.X);
+			int py = (int) baked.getMetric(i, BakedFont.Y);
+			int width = (int) baked.getMetric(i, BakedFont.WIDTH);
+			int height = (int) baked.getMetric(i, BakedFont.HEIGHT);
+
+			// UV coordinates
+			float u = (float) px / textureWidth;
+			float v = (float) py / textureHeight;
+			float u2 = (float) (px + width) / textureWidth;
+			float v2 = (float) (py + height) / textureHeight;
+
+			CharacterData data = new CharacterData(width, height, baked.getMetric(i, BakedFont.ORIGIN_X), baked.getMetric(i, BakedFont.ORIGIN_Y), baked.getMetric(i, BakedFont.ADVANCE), u, v, u2, v2, scale);
+			data.x = px;
+			data.y = py;
+			data.slot = glyphStore.add(data.renderOriginX, data.renderOriginY, data.renderWidth, data.renderHeight, data.renderAdvance, u, v, u2, v2);
+			glyphs[data.slot] = data;
+			this.fontGlyphIndices[data.slot] = baked.getGlyphIndex(i);
+			// The variants of a glyph take the slots after the first one.
+			if (i % this.subpixelVariants == 0) {
+				glyphIndices.put(baked.getCodepoint(i), data.slot);
+				// Several codepoints can share a glyph, any of their slots has the same pixels.
+				if (baked.getGlyphIndex(i) != 0 && !this.fontGlyphSlots.contains(baked.getGlyphIndex(i))) {
+					this.fontGlyphSlots.put(baked.getGlyphIndex(i), data.slot);
+				}
+			}
+		}
 
-		// Create bitmap
-		ByteBuffer bitmap = BufferUtils.createByteBuffer(textureWidth * textureHeight);
-		STBTruetype.stbtt_BakeFontBitmap(ttf, fontHeight, bitmap, textureWidth, textureHeight, firstChar, cdata);
+		int kerningCount = baked.getKerningCount();
+		if (kerningCount > 0) {
+			this.kerning = new KerningTable(kerningCount);
+			for (int i = 0; i < kerningCount; i++) {
+				this.kerning.put(baked.getKerningFirst(i), baked.getKerningSecond(i), baked.getKerningAmount(i) * scale);
+			}
+		} else {
+			this.kerning = null;
+		}
 
 		// Move bitmap into texture
+		int texID = GL11.glGenTextures();
 		GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
-		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, textureWidth, textureHeight, 0, GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, bitmap);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, textureWidth, textureHeight, 0, GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, baked.getBitmap());
 		this.applyTextureParameters();
 
 		this.texture = new GLTexture(texID, textureWidth, textureHeight);
-		this.glyphs = new HashMap<>();
+
+		this.fontHeight = (int) (baked.getFontHeight() * scale);
+		this.height = baked.getHeight() * scale;
+		this.ascent = baked.getAscent() * scale;
+		this.descent = baked.getDescent() * scale;
+		this.lineGap = baked.getLineGap() * scale;
+	}
+
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a bitmap of up to {@link #DEFAULT_MAX_TEXTURE_SIZE}.
+	 *
+	 * @see #bake(ByteBuffer, int, int, int, int, int, boolean, int, int)
+	 */
+	public static BakedFont bake(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf) {
+		return bake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, 1, DEFAULT_MAX_TEXTURE_SIZE);
+	}
+
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a bitmap, without subpixel variants.
+	 *
+	 * @see #bake(ByteBuffer, int, int, int, int, int, boolean, int, int)
+	 */
+	public static BakedFont bake(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int maxTextureSize) {
+		return bake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, 1, maxTextureSize);
+	}
+
+	/**
+	 * Bakes a font on an executor, like a {@link java.util.concurrent.ForkJoinPool ForkJoinPool}.
+	 * The result is uploaded with {@link #TTFFont(BakedFont, float)} on the OpenGL thread.
+	 *
+	 * @see #bake(ByteBuffer, int, int, int, int, int, boolean)
+	 */
+	public static CompletableFuture<BakedFont> bakeAsync(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> bake(ttf, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf), executor);
+	}
+
+	/**
+	 * Rasterizes the glyphs of a range of codepoints into a bitmap, without creating any texture.<p>
+	 * It doesn't use OpenGL or any shared state, so fonts can be baked on several threads at the same time,
+	 * even from the same {@code ttf} buffer.<p>
+	 * With more than one subpixel variant, every glyph is rasterized several times, each one shifted horizontally by
+	 * a fraction of a pixel. Renderers pick the variant closest to the fractional part of the pen position (see
+	 * {@link IFont#getSubpixelVariants()}), so small text moves smoothly instead of jumping whole pixels.
+	 * Three or four variants are usually indistinguishable from exact positioning.
+	 *
+	 * @param ttf              The TTF data. It isn't modified.
+	 * @param textureWidth     The initial width of the bitmap. The bitmap grows in powers of two if the glyphs don't fit.
+	 * @param textureHeight    The initial height of the bitmap. The bitmap grows in powers of two if the glyphs don't fit.
+	 * @param fontHeight       The height of the font in pixels.
+	 * @param characterCount   The amount of codepoints to rasterize.
+	 * @param firstChar        The first codepoint to rasterize.
+	 * @param sdf              True to generate signed distance fields instead of bitmaps.
+	 * @param subpixelVariants The amount of horizontal subpixel positions to rasterize every glyph at. Must be 1 with {@code sdf}.
+	 * @param maxTextureSize   The maximum width and height of the bitmap.
+	 * @throws IllegalStateException If the glyphs don't fit in the maximum texture size.
+	 */
+	public static BakedFont bake(ByteBuffer ttf, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants, int maxTextureSize) {
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			STBTTFontinfo info = STBTTFontinfo.malloc(stack);
+			if (!STBTruetype.stbtt_InitFont(info, ttf)) {
+				throw new RuntimeException("failed to init font");
+			}
+
+			return bake(info, textureWidth, textureHeight, fontHeight, characterCount, firstChar, sdf, subpixelVariants, maxTextureSize);
+		}
+	}
+
+	/**
+	 * Rasterizes the glyphs of a range of codepoints from a font that was already parsed, like the faces of a
+	 * {@link FontRegistry}. The font info is only read, so it can be shared by several threads.
+	 *
+	 * @param info The parsed font. Its TTF data must stay alive until this method returns.
+	 * @see #bake(ByteBuffer, int, int, int, int, int, boolean, int, int)
+	 */
+	public static BakedFont bake(STBTTFontinfo info, int textureWidth, int textureHeight, int fontHeight, int characterCount, int firstChar, boolean sdf, int subpixelVariants, int maxTextureSize) {
+		if (subpixelVariants < 1) throw new IllegalArgumentException("subpixelVariants < 1");
+		// Distance fields are already smooth at any position.
+		if (sdf && subpixelVariants != 1) throw new IllegalArgumentException("Distance fields don't have subpixel variants");
+
+		int glyphCount = characterCount * subpixelVariants;
+		int[] codepoints = new int[glyphCount];
+		int[] glyphIndices = new int[glyphCount];
+		float[] metrics = new float[glyphCount * BakedFont.STRIDE];
 
 		float ascent;
 		float descent;
@@ -97,27 +315,24 @@ public class TTFFont implements IFont {
 
 		float maxHeight = 0;
 
+		String name;
+		ByteBuffer bitmap;
+		SkylinePacker packer;
+
+		Kerning kerning;
+
 		// Collect glyphs into a friendlier environment
 		try (MemoryStack stack = MemoryStack.stackPush()) {
-			STBTTAlignedQuad charInfo = STBTTAlignedQuad.malloc(stack);
-
-			// Get name of the font, along with the size.
-			// http://forum.lwjgl.org/index.php?topic=6565.0
-			ByteBuffer byteBuffer = STBTruetype.stbtt_GetFontNameString(_tempInfo, STBTruetype.STBTT_PLATFORM_ID_MICROSOFT, STBTruetype.STBTT_MS_EID_UNICODE_BMP, STBTruetype.STBTT_MS_LANG_ENGLISH, 4);
-			if (byteBuffer != null) {
-				this.name = MemoryUtil.memUTF8(byteBuffer.order(ByteOrder.BIG_ENDIAN)).replace("\u0000", "") + " - " + fontHeight;
-			} else {
-				this.name = "unknown - " + fontHeight;
-			}
+			name = getFontName(info, fontHeight);
 
 			// Get the scale for the next operations.
-			float sc = STBTruetype.stbtt_ScaleForPixelHeight(_tempInfo, fontHeight);
+			float sc = STBTruetype.stbtt_ScaleForPixelHeight(info, fontHeight);
 
 			// Get vertical information for moving the characters into the correct position.
 			IntBuffer _ascent = stack.mallocInt(1);
 			IntBuffer _descent = stack.mallocInt(1);
 			IntBuffer _lineGap = stack.mallocInt(1);
-			STBTruetype.stbtt_GetFontVMetrics(_tempInfo, _ascent, _descent, _lineGap);
+			STBTruetype.stbtt_GetFontVMetrics(info, _ascent, _descent, _lineGap);
 			ascent = _ascent.get(0) * sc;
 			descent = _descent.get(0) * sc;
 			lineGap = _lineGap.get(0) * sc;
@@ -125,60 +340,316 @@ public class TTFFont implements IFont {
 			// Center the font
 			float fontOffset = (float) Math.ceil(ascent + descent);
 
-			// Convert characters into a friendlier format
-			FloatBuffer x = stack.mallocFloat(1);
-			FloatBuffer y = stack.mallocFloat(1);
+			// Measure the bitmap of every glyph.
+			// Distance fields are generated at this point, as their size is only known after generating them.
+			int[] boxes = new int[glyphCount * 4];
+			ByteBuffer[] fields = sdf ? new ByteBuffer[glyphCount] : null;
+			int sdfPadding = Math.max(2, fontHeight / 8);
+			IntBuffer x0 = stack.mallocInt(1);
+			IntBuffer y0 = stack.mallocInt(1);
+			IntBuffer x1 = stack.mallocInt(1);
+			IntBuffer y1 = stack.mallocInt(1);
+			for (int glyph = 0; glyph < glyphCount; glyph++) {
+				int codepoint = glyph / subpixelVariants + firstChar;
+				if (sdf) {
+					// x1 and y1 receive the size, and x0 and y0 the offset.
+					fields[glyph] = STBTruetype.stbtt_GetCodepointSDF(info, sc, codepoint, sdfPadding, (byte) SDF_ON_EDGE, (float) SDF_ON_EDGE / sdfPadding, x1, y1, x0, y0);
+					if (fields[glyph] == null) {
+						x1.put(0, 0);
+						y1.put(0, 0);
+						x0.put(0, 0);
+						y0.put(0, 0);
+					}
+					x1.put(0, x0.get(0) + x1.get(0));
+					y1.put(0, y0.get(0) + y1.get(0));
+				} else {
+					float shift = (float) (glyph % subpixelVariants) / subpixelVariants;
+					STBTruetype.stbtt_GetCodepointBitmapBoxSubpixel(info, codepoint, sc, sc, shift, 0, x0, y0, x1, y1);
+				}
+				boxes[glyph * 4] = x0.get(0);
+				boxes[glyph * 4 + 1] = y0.get(0);
+				boxes[glyph * 4 + 2] = x1.get(0);
+				boxes[glyph * 4 + 3] = y1.get(0);
+			}
+
+			// Find a place for every glyph, growing the texture if needed.
+			packer = new SkylinePacker(textureWidth, textureHeight, 1, maxTextureSize);
+			int[] positions = packGlyphs(packer, boxes, glyphCount);
+			textureWidth = packer.getWidth();
+			textureHeight = packer.getHeight();
+
+			// Rasterize the glyphs directly into the bitmap.
+			bitmap = BufferUtils.createByteBuffer(textureWidth * textureHeight);
 
 			IntBuffer _advanceWidth = stack.mallocInt(1);
 			IntBuffer _leftSideBearing = stack.mallocInt(1);
 
-			for (int charIndex = 0; charIndex < cdata.capacity(); charIndex++) {
-				// Reset the x and y position, as we are not using STB to bake quads.
-				x.clear();
-				y.clear();
-				x.put(0, 0F);
-				y.put(0, 0F);
-
-				// Retrieve the baked character information
-				STBTruetype.stbtt_GetBakedQuad(cdata, textureWidth, textureHeight, charIndex, x, y, charInfo, false);
+			for (int glyph = 0; glyph < glyphCount; glyph++) {
+				int codepoint = glyph / subpixelVariants + firstChar;
+				float shift = (float) (glyph % subpixelVariants) / subpixelVariants;
+				int px = positions[glyph * 2];
+				int py = positions[glyph * 2 + 1];
+				int width = boxes[glyph * 4 + 2] - boxes[glyph * 4];
+				int height = boxes[glyph * 4 + 3] - boxes[glyph * 4 + 1];
+				if (sdf) {
+					copyGlyph(fields[glyph], bitmap, textureWidth, px, py, width, height);
+				} else {
+					rasterizeGlyph(info, bitmap, textureWidth, px, py, width, height, sc, shift, codepoint);
+				}
 
 				// Retrieve horizontal codepoint information
-				// This information can be extracted the baked quad, but I do it this way just to be sure.
-				// It's not like performance is important at initialization... I think.
-				STBTruetype.stbtt_GetCodepointHMetrics(_tempInfo, charIndex + firstChar, _advanceWidth.clear(), _leftSideBearing.clear());
-				float advanceWidth = _advanceWidth.get(0) * sc;
-				float originX = _leftSideBearing.get(0) * sc;
-
-				// The +0.5F is an offset that fixes the coordinates that STB provides.
-				float x0 = charInfo.x0() + 0.5F;
-				float y0 = charInfo.y0() + 0.5F;
-				float x1 = charInfo.x1() + 0.5F;
-				float y1 = charInfo.y1() + 0.5F;
-
-				// Calculate the glyph information
-				float width = x1 - x0;
-				float height = y1 - y0;
-				float originY = y0 + fontOffset;
-
-				// UV coordinates
-				float u = charInfo.s0();
-				float v = charInfo.t0();
-				float u2 = charInfo.s1();
-				float v2 = charInfo.t1();
-
-				if (maxHeight < height) {
-					maxHeight = height;
+				STBTruetype.stbtt_GetCodepointHMetrics(info, codepoint, _advanceWidth.clear(), _leftSideBearing.clear());
+				int offset = glyph * BakedFont.STRIDE;
+				codepoints[glyph] = codepoint;
+				glyphIndices[glyph] = STBTruetype.stbtt_FindGlyphIndex(info, codepoint);
+				metrics[offset + BakedFont.X] = px;
+				metrics[offset + BakedFont.Y] = py;
+				metrics[offset + BakedFont.WIDTH] = width;
+				metrics[offset + BakedFont.HEIGHT] = height;
+				// Distance fields are placed by their own offset, which includes the padding.
+				// Subpixel variants are placed by their box, which includes the shift, and drawn at whole pixels.
+				metrics[offset + BakedFont.ORIGIN_X] = sdf || subpixelVariants > 1 ? boxes[glyph * 4] : _leftSideBearing.get(0) * sc;
+				metrics[offset + BakedFont.ORIGIN_Y] = boxes[glyph * 4 + 1] + fontOffset;
+				metrics[offset + BakedFont.ADVANCE] = _advanceWidth.get(0) * sc;
+
+				int glyphHeight = sdf && height > 0 ? height - sdfPadding * 2 : height;
+				if (maxHeight < glyphHeight) {
+					maxHeight = glyphHeight;
+				}
+			}
+
+			// Look up the kerning of the range once, so it's never done while drawing.
+			kerning = findKerning(info, characterCount, firstChar, sc);
+
+			if (sdf) {
+				for (ByteBuffer field : fields) {
+					if (field != null) STBTruetype.stbtt_FreeSDF(field);
+				}
+			}
+		}
+
+		return new BakedFont(name, fontHeight, maxHeight, ascent, descent, lineGap, sdf, subpixelVariants, textureWidth, textureHeight, packer.getEfficiency(), codepoints, glyphIndices, metrics, bitmap, kerning.pairs(), kerning.amounts());
+	}
+
+	/**
+	 * Finds the kerning pairs of a range of codepoints, with the same amounts as {@code stbtt_GetGlyphKernAdvance},
+	 * which prefers {@code GPOS} over the {@code kern} table. The pairs of {@code GPOS} are looked up one by one, but
+	 * only up to {@link #KERNING_LOOKUP_LIMIT}. The pairs of the {@code kern} table are enumerated directly, so the time
+	 * doesn't depend on the size of the range, and the ones outside of that square are looked up in {@code GPOS} too
+	 * if the font has it.
+	 *
+	 * @param scale The scale of the font, applied to the amounts.
+	 */
+	private static Kerning findKerning(STBTTFontinfo info, int characterCount, int firstChar, float scale) {
+		int[] glyphIndices = new int[characterCount];
+		// The glyph index in the upper 32 bits and the character index in the lower ones, sorted to find every
+		// codepoint of a glyph.
+		long[] byGlyph = new long[characterCount];
+		int mapped = 0;
+		for (int charIndex = 0; charIndex < characterCount; charIndex++) {
+			int glyph = STBTruetype.stbtt_FindGlyphIndex(info, charIndex + firstChar);
+			glyphIndices[charIndex] = glyph;
+			if (glyph != 0) {
+				byGlyph[mapped++] = ((long) glyph << 32) | charIndex;
+			}
+		}
+		Arrays.sort(byGlyph, 0, mapped);
+
+		Kerning kerning = new Kerning();
+		boolean gpos = hasTable(info, GPOS_TAG);
+		int lookupCount = gpos ? Math.min(characterCount, Math.max(KERNING_LOOKUP_LIMIT - firstChar, 0)) : 0;
+		for (int first = 0; first < lookupCount; first++) {
+			if (glyphIndices[first] == 0) continue;
+
+			for (int second = 0; second < lookupCount; second++) {
+				if (glyphIndices[second] == 0) continue;
+
+				int amount = STBTruetype.stbtt_GetGlyphKernAdvance(info, glyphIndices[first], glyphIndices[second]);
+				if (amount != 0) {
+					kerning.add(first + firstChar, second + firstChar, amount * scale);
+				}
+			}
+		}
+
+		int tableLength = STBTruetype.stbtt_GetKerningTableLength(info);
+		if (tableLength <= 0) {
+			return kerning;
+		}
+
+		STBTTKerningentry.Buffer entries = STBTTKerningentry.malloc(tableLength);
+		try {
+			int entryCount = STBTruetype.stbtt_GetKerningTable(info, entries);
+			for (int i = 0; i < entryCount; i++) {
+				STBTTKerningentry entry = entries.get(i);
+				if (entry.advance() == 0) continue;
+
+				int first = findGlyph(byGlyph, mapped, entry.glyph1());
+				if (first < 0) continue;
+				int second = findGlyph(byGlyph, mapped, entry.glyph2());
+				if (second < 0) continue;
+
+				// Several codepoints can share a glyph.
+				for (int a = first; a < mapped && (int) (byGlyph[a] >>> 32) == entry.glyph1(); a++) {
+					int firstIndex = (int) byGlyph[a];
+					for (int b = second; b < mapped && (int) (byGlyph[b] >>> 32) == entry.glyph2(); b++) {
+						int secondIndex = (int) byGlyph[b];
+						// Already looked up in GPOS.
+						if (firstIndex < lookupCount && secondIndex < lookupCount) continue;
+
+						int amount = gpos ? STBTruetype.stbtt_GetGlyphKernAdvance(info, entry.glyph1(), entry.glyph2()) : entry.advance();
+						if (amount != 0) {
+							kerning.add(firstIndex + firstChar, secondIndex + firstChar, amount * scale);
+						}
+					}
 				}
+			}
+		} finally {
+			entries.free();
+		}
+		return kerning;
+	}
+
+	/**
+	 * @param tag The tag of the table, as a big endian integer.
+	 * @return True if the font has the table.
+	 */
+	private static boolean hasTable(STBTTFontinfo info, int tag) {
+		return findTable(info, tag) != 0;
+	}
+
+	/**
+	 * @return The amount of glyphs of the font, from its {@code maxp} table.
+	 */
+	static int getGlyphCount(STBTTFontinfo info) {
+		long maxp = findTable(info, MAXP_TAG);
+		if (maxp == 0) return 0;
+		return Short.toUnsignedInt(MemoryUtil.memByteBuffer(maxp, 6).order(ByteOrder.BIG_ENDIAN).getShort(4));
+	}
+
+	/**
+	 * @param tag The tag of the table, as a big endian integer.
+	 * @return The address of the table, or 0 if the font doesn't have it.
+	 */
+	private static long findTable(STBTTFontinfo info, int tag) {
+		// The font info is opaque, but it starts with the user data, the font data and the offset of the font in it.
+		long data = MemoryUtil.memGetAddress(info.address() + Pointer.POINTER_SIZE);
+		int fontStart = MemoryUtil.memGetInt(info.address() + 2L * Pointer.POINTER_SIZE);
+		ByteBuffer header = MemoryUtil.memByteBuffer(data + fontStart, 12).order(ByteOrder.BIG_ENDIAN);
+		int tableCount = Short.toUnsignedInt(header.getShort(4));
+
+		ByteBuffer records = MemoryUtil.memByteBuffer(data + fontStart + 12, tableCount * 16).order(ByteOrder.BIG_ENDIAN);
+		for (int i = 0; i < tableCount; i++) {
+			if (records.getInt(i * 16) == tag) {
+				return data + Integer.toUnsignedLong(records.getInt(i * 16 + 8));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return The first index of {@code sorted} with the {@code glyph} in its upper 32 bits, or -1 if there isn't any.
+	 */
+	private static int findGlyph(long[] sorted, int length, int glyph) {
+		int index = Arrays.binarySearch(sorted, 0, length, (long) glyph << 32);
+		// The lowest character index is 0, so the key itself is often found.
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index < length && (int) (sorted[index] >>> 32) == glyph ? index : -1;
+	}
 
-				glyphs.put(charIndex + firstChar, new CharacterData((int) width, (int) height, originX, originY, advanceWidth, u, v, u2, v2, scale));
+	/**
+	 * Packs the glyph boxes, tallest first.
+	 *
+	 * @param boxes The bitmap boxes of the glyphs as {@code x0, y0, x1, y1}.
+	 * @return The X and Y of each glyph.
+	 */
+	private static int[] packGlyphs(SkylinePacker packer, int[] boxes, int count) {
+		// Sort by height, keeping the index in the lower bits.
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = ((long) (boxes[i * 4 + 3] - boxes[i * 4 + 1]) << 32) | i;
+		}
+		Arrays.sort(order);
+
+		int[] positions = new int[count * 2];
+		int[] position = new int[2];
+		for (int j = count - 1; j >= 0; j--) {
+			int i = (int) order[j];
+			if (!packer.pack(boxes[i * 4 + 2] - boxes[i * 4], boxes[i * 4 + 3] - boxes[i * 4 + 1], position)) {
+				throw new IllegalStateException("The glyphs don't fit in a " + packer.getWidth() + "x" + packer.getHeight() + " texture.");
 			}
+			positions[i * 2] = position[0];
+			positions[i * 2 + 1] = position[1];
 		}
+		return positions;
+	}
 
-		this.fontHeight = (int) (fontHeight * scale);
-		this.height = (maxHeight) * scale;
-		this.ascent = ascent * scale;
-		this.descent = descent * scale;
-		this.lineGap = lineGap * scale;
+	/**
+	 * Rasterizes a glyph shifted horizontally by a fraction of a pixel into a region of a bigger bitmap.
+	 *
+	 * @param bitmap The destination bitmap, one byte per pixel.
+	 * @param stride The width of the destination bitmap.
+	 * @param shift  The horizontal shift, from 0 to 1.
+	 */
+	static void rasterizeGlyph(STBTTFontinfo info, ByteBuffer bitmap, int stride, int x, int y, int width, int height, float scale, float shift, int codepoint) {
+		if (width <= 0 || height <= 0) return;
+		if ((long) (y + height - 1) * stride + x + width > bitmap.capacity()) throw new IndexOutOfBoundsException("glyph outside of the bitmap");
+
+		// The checked binding expects the whole stride for the last row, which isn't available near the end of the bitmap.
+		long address = MemoryUtil.memAddress0(bitmap) + (long) y * stride + x;
+		STBTruetype.nstbtt_MakeCodepointBitmapSubpixel(info.address(), address, width, height, stride, scale, scale, shift, 0, codepoint);
+	}
+
+	/**
+	 * Rasterizes a glyph by its index in the font file into a region of a bigger bitmap.
+	 *
+	 * @param bitmap The destination bitmap, one byte per pixel.
+	 * @param stride The width of the destination bitmap.
+	 */
+	static void rasterizeGlyphIndex(STBTTFontinfo info, ByteBuffer bitmap, int stride, int x, int y, int width, int height, float scale, int glyphIndex) {
+		if (width <= 0 || height <= 0) return;
+		if ((long) (y + height - 1) * stride + x + width > bitmap.capacity()) throw new IndexOutOfBoundsException("glyph outside of the bitmap");
+
+		long address = MemoryUtil.memAddress0(bitmap) + (long) y * stride + x;
+		STBTruetype.nstbtt_MakeGlyphBitmapSubpixel(info.address(), address, width, height, stride, scale, scale, 0, 0, glyphIndex);
+	}
+
+	/**
+	 * Copies a glyph bitmap into a region of a bigger bitmap.
+	 *
+	 * @param glyph  The bitmap of the glyph, tightly packed.
+	 * @param bitmap The destination bitmap, one byte per pixel.
+	 * @param stride The width of the destination bitmap.
+	 */
+	static void copyGlyph(ByteBuffer glyph, ByteBuffer bitmap, int stride, int x, int y, int width, int height) {
+		if (glyph == null || width <= 0 || height <= 0) return;
+
+		long src = MemoryUtil.memAddress(glyph);
+		long dst = MemoryUtil.memAddress0(bitmap);
+		for (int row = 0; row < height; row++) {
+			MemoryUtil.memCopy(src + (long) row * width, dst + (long) (y + row) * stride + x, width);
+		}
+	}
+
+	/**
+	 * @return The fraction of the texture covered by glyphs, from 0 to 1.
+	 */
+	public float getPackingEfficiency() {
+		return this.packingEfficiency;
+	}
+
+	/**
+	 * Gets the name of the font, along with the size.
+	 */
+	static String getFontName(STBTTFontinfo info, int fontHeight) {
+		// http://forum.lwjgl.org/index.php?topic=6565.0
+		ByteBuffer byteBuffer = STBTruetype.stbtt_GetFontNameString(info, STBTruetype.STBTT_PLATFORM_ID_MICROSOFT, STBTruetype.STBTT_MS_EID_UNICODE_BMP, STBTruetype.STBTT_MS_LANG_ENGLISH, 4);
+		if (byteBuffer != null) {
+			return MemoryUtil.memUTF8(byteBuffer.order(ByteOrder.BIG_ENDIAN)).replace("\u0000", "") + " - " + fontHeight;
+		}
+
+		return "unknown - " + fontHeight;
 	}
 
 	protected void applyTextureParameters() {
@@ -190,8 +661,21 @@ public class TTFFont implements IFont {
 				GL11.GL_ONE,
 				GL11.GL_ALPHA,
 		});
-		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
-		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+		// Distance fields must be interpolated.
+		int filter = this.sdf ? GL11.GL_LINEAR : GL11.GL_NEAREST;
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, filter);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, filter);
+		if (this.sdf) {
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+		}
+	}
+
+	/**
+	 * Deletes the texture of the font. The font cannot be used after calling this method.
+	 */
+	public void delete() {
+		GL11.glDeleteTextures(this.texture.getId());
 	}
 
 	@Override
@@ -231,6 +715,84 @@ public class TTFFont implements IFont {
 
 	@Override
 	public CharacterData getCharacterData(int codepoint) {
-		return this.glyphs.get(codepoint);
+		int index = this.glyphIndices.get(codepoint);
+		return index == CodepointTable.MISSING ? null : this.glyphs[index];
+	}
+
+	@Override
+	public boolean isSDF() {
+		return this.sdf;
+	}
+
+	@Override
+	public @NotNull GlyphStore getGlyphStore() {
+		return this.glyphStore;
+	}
+
+	@Override
+	public int getGlyphSlot(int codepoint) {
+		return this.glyphIndices.get(codepoint);
+	}
+
+	@Override
+	public int getGlyphIndex(int codepoint) {
+		int slot = this.glyphIndices.get(codepoint);
+		return slot == CodepointTable.MISSING ? 0 : this.fontGlyphIndices[slot];
+	}
+
+	/**
+	 * {@inheritDoc}<p>
+	 * Only the glyphs of the baked codepoints are available.
+	 */
+	@Override
+	public int getGlyphSlotByIndex(int glyphIndex) {
+		return glyphIndex == 0 ? -1 : this.fontGlyphSlots.get(glyphIndex);
+	}
+
+	@Override
+	public @Nullable CharacterData getCharacterDataByIndex(int glyphIndex) {
+		int slot = this.getGlyphSlotByIndex(glyphIndex);
+		return slot == -1 ? null : this.glyphs[slot];
+	}
+
+	@Override
+	public @Nullable KerningTable getKerningTable() {
+		return this.kerning;
+	}
+
+	@Override
+	public int getSubpixelVariants() {
+		return this.subpixelVariants;
+	}
+
+	/**
+	 * The kerning pairs found while baking.
+	 */
+	private static final class Kerning {
+		private int[] pairs = new int[32];
+		private float[] amounts = new float[16];
+		private int count;
+
+		void add(int first, int second, float amount) {
+			if (this.count == this.amounts.length) {
+				this.amounts = Arrays.copyOf(this.amounts, this.count * 2);
+				this.pairs = Arrays.copyOf(this.pairs, this.count * 4);
+			}
+			this.pairs[this.count * 2] = first;
+			this.pairs[this.count * 2 + 1] = second;
+			this.amounts[this.count] = amount;
+			this.count++;
+		}
+
+		/**
+		 * @return The first and second codepoint of every pair.
+		 */
+		int[] pairs() {
+			return Arrays.copyOf(this.pairs, this.count * 2);
+		}
+
+		float[] amounts() {
+			return Arrays.copyOf(this.amounts, this.count);
+		}
 	}
 }
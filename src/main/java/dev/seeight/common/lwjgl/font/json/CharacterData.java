@@ -60,6 +60,12 @@ public class CharacterData {
 	public transient float renderOriginY;
 	public transient float renderAdvance;
 
+	/**
+	 * The position of this glyph in the {@link dev.seeight.common.lwjgl.font.GlyphStore GlyphStore} of the font that owns it.
+	 * {@code -1} if the font doesn't keep one.
+	 */
+	public transient int slot = -1;
+
 	public void calcUV(double texWidth, double texHeight) {
 		this.u = (texWidth - this.x) / texWidth;
 		this.v = (texHeight - this.y) / texHeight;
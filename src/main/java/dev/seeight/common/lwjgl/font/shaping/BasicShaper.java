@@ -0,0 +1,154 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font.shaping;
+
+import dev.seeight.common.lwjgl.font.IFont;
+import dev.seeight.common.lwjgl.font.KerningTable;
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Shapes text with the data the fonts of this library have, without any external shaping engine:
+ * <ul>
+ *     <li>Surrogate pairs are joined into a single glyph, instead of one invalid glyph per {@code char}.</li>
+ *     <li>Glyphs come from the font that has them (see {@link IFont#getGlyphFont(int)}).</li>
+ *     <li>{@code "kern"}: the kerning tables of the fonts are applied. Enabled by default.</li>
+ *     <li>{@code "mark"}: combining marks don't move the pen. Marks the font draws as spacing glyphs are centered
+ *     over the glyph before them. Enabled by default.</li>
+ * </ul>
+ * Ligatures and the reordering of complex scripts need the substitution tables of the font, which aren't available.
+ *
+ * @author C8FF
+ */
+public class BasicShaper implements TextShaper {
+	@Override
+	public @NotNull ShapedRun shape(IFont font, CharSequence text, String features) {
+		boolean kerning = isEnabled(features, "kern", true);
+		boolean marks = isEnabled(features, "mark", true);
+
+		int length = text.length();
+		int[] glyphs = new int[length];
+		IFont[] glyphFonts = new IFont[length];
+		float[] positions = new float[length * 2];
+		int[] clusters = new int[length];
+		int count = 0;
+
+		float lineHeight = font.getHeight();
+		float x = 0;
+		float y = 0;
+		float width = 0;
+		int previous = -1;
+		IFont previousFont = null;
+		float previousAdvance = 0;
+		for (int i = 0; i < length; ) {
+			int codepoint = Character.codePointAt(text, i);
+			int cluster = i;
+			i += Character.charCount(codepoint);
+
+			if (codepoint == '\n') {
+				width = Math.max(width, x);
+				x = 0;
+				y += lineHeight;
+				previous = -1;
+				continue;
+			}
+
+			IFont glyphFont = font.getGlyphFont(codepoint);
+			CharacterData data = glyphFont.getCharacterData(codepoint);
+			float advance = data == null ? 0 : data.renderAdvance;
+
+			float offset = 0;
+			if (marks && previous != -1 && isMark(codepoint)) {
+				// Marks with an advance are drawn centered over the base glyph, the rest are already placed by the font.
+				if (advance != 0) {
+					offset = -(previousAdvance + advance) / 2;
+				}
+				advance = 0;
+			} else {
+				if (kerning && previous != -1 && glyphFont == previousFont) {
+					KerningTable table = glyphFont.getKerningTable();
+					if (table != null) {
+						x += table.get(previous, codepoint);
+					}
+				}
+				previous = codepoint;
+				previousFont = glyphFont;
+				previousAdvance = advance;
+			}
+
+			glyphs[count] = glyphFont.getGlyphIndex(codepoint);
+			glyphFonts[count] = glyphFont;
+			positions[count * 2] = x + offset;
+			positions[count * 2 + 1] = y;
+			clusters[count] = cluster;
+			count++;
+
+			x += advance;
+		}
+		width = Math.max(width, x);
+
+		if (count != length) {
+			glyphs = Arrays.copyOf(glyphs, count);
+			glyphFonts = Arrays.copyOf(glyphFonts, count);
+			positions = Arrays.copyOf(positions, count * 2);
+			clusters = Arrays.copyOf(clusters, count);
+		}
+		return new ShapedRun(font, glyphs, glyphFonts, positions, clusters, width, y + lineHeight);
+	}
+
+	/**
+	 * @return True if the codepoint is drawn over the character before it.
+	 */
+	protected static boolean isMark(int codepoint) {
+		int type = Character.getType(codepoint);
+		return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK;
+	}
+
+	/**
+	 * Looks for a feature in a HarfBuzz feature list, like {@code "kern,-liga"}. The last mention wins.
+	 */
+	static boolean isEnabled(String features, String feature, boolean enabledByDefault) {
+		boolean enabled = enabledByDefault;
+		if (features == null || features.isEmpty()) {
+			return enabled;
+		}
+
+		for (String f : features.split(",")) {
+			f = f.trim();
+			boolean value = true;
+			if (f.startsWith("-")) {
+				value = false;
+				f = f.substring(1);
+			} else if (f.startsWith("+")) {
+				f = f.substring(1);
+			}
+
+			// Values like "kern=0" or "kern[3:5]" aren't supported beyond the name.
+			int end = 0;
+			while (end < f.length() && Character.isLetterOrDigit(f.charAt(end))) end++;
+			if (f.substring(0, end).equals(feature)) {
+				if (end < f.length() && f.startsWith("=0", end)) value = false;
+				enabled = value;
+			}
+		}
+		return enabled;
+	}
+}
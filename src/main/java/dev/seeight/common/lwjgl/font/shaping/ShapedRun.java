@@ -0,0 +1,116 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font.shaping;
+
+import dev.seeight.common.lwjgl.font.IFont;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The glyphs of a text after shaping it, with the position of each one already resolved.<p>
+ * Positions are relative to the start of the text and don't include the scale of the renderer, so a run can be
+ * drawn any amount of times (see {@link dev.seeight.common.lwjgl.fontrenderer.IFontRenderer#drawShaped(ShapedRun, float, float)})
+ * and cached (see {@link ShapedRunCache}). It can't be modified.<p>
+ * Glyphs are identified by their index in the font file of their font (see {@link IFont#getGlyphIndex(int)}), like the
+ * output of HarfBuzz, so glyphs without a codepoint (ligatures and other substitutions) can be drawn too.
+ *
+ * @author C8FF
+ */
+public final class ShapedRun {
+	private final IFont font;
+	private final int[] glyphs;
+	private final IFont[] glyphFonts;
+	private final float[] positions;
+	private final int[] clusters;
+	private final float width;
+	private final float height;
+
+	/**
+	 * @param font       The font the text was shaped with.
+	 * @param glyphs     The glyph index of every position, in the font of the same position.
+	 * @param glyphFonts The font that draws every glyph (see {@link IFont#getGlyphFont(int)}).
+	 * @param positions  The X and Y position of the pen of every glyph.
+	 * @param clusters   The index of the character of the text every glyph comes from.
+	 * @param width      The width of the widest line.
+	 * @param height     The height of every line together.
+	 */
+	public ShapedRun(IFont font, int[] glyphs, IFont[] glyphFonts, float[] positions, int[] clusters, float width, float height) {
+		if (glyphFonts.length != glyphs.length || positions.length != glyphs.length * 2 || clusters.length != glyphs.length) {
+			throw new IllegalArgumentException("The arrays don't have the same amount of glyphs");
+		}
+
+		this.font = font;
+		this.glyphs = glyphs;
+		this.glyphFonts = glyphFonts;
+		this.positions = positions;
+		this.clusters = clusters;
+		this.width = width;
+		this.height = height;
+	}
+
+	public @NotNull IFont getFont() {
+		return this.font;
+	}
+
+	/**
+	 * @return The amount of glyphs.
+	 */
+	public int size() {
+		return this.glyphs.length;
+	}
+
+	/**
+	 * @return The glyph index, to be used with {@link IFont#getGlyphSlotByIndex(int)} of {@link #getGlyphFont(int)}.
+	 */
+	public int getGlyph(int index) {
+		return this.glyphs[index];
+	}
+
+	public @NotNull IFont getGlyphFont(int index) {
+		return this.glyphFonts[index];
+	}
+
+	public float getX(int index) {
+		return this.positions[index * 2];
+	}
+
+	public float getY(int index) {
+		return this.positions[index * 2 + 1];
+	}
+
+	/**
+	 * @return The index of the character of the text the glyph comes from.
+	 */
+	public int getCluster(int index) {
+		return this.clusters[index];
+	}
+
+	/**
+	 * @return The width of the widest line, without the scale of any renderer.
+	 */
+	public float getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return The height of every line together, without the scale of any renderer.
+	 */
+	public float getHeight() {
+		return this.height;
+	}
+}
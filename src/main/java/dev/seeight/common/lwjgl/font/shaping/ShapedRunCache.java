@@ -0,0 +1,128 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font.shaping;
+
+import dev.seeight.common.lwjgl.font.IFont;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used shaped runs, so text that doesn't change (like most UI labels) is only shaped once.<p>
+ * Runs are identified by their text, font and features. When the cache is full, the least recently used run is
+ * discarded.
+ *
+ * @author C8FF
+ */
+public class ShapedRunCache {
+	private final TextShaper shaper;
+	private final int capacity;
+	private final LinkedHashMap<Key, ShapedRun> runs;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param shaper   Shapes the texts that aren't in the cache.
+	 * @param capacity The maximum amount of runs kept.
+	 */
+	public ShapedRunCache(TextShaper shaper, int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity < 1");
+
+		this.shaper = shaper;
+		this.capacity = capacity;
+		// Access order makes the eldest entry the least recently used one.
+		this.runs = new LinkedHashMap<>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ShapedRun> eldest) {
+				return this.size() > ShapedRunCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the shaped text with the default features of the shaper.
+	 *
+	 * @see #get(IFont, String, String)
+	 */
+	public @NotNull ShapedRun get(IFont font, String text) {
+		return this.get(font, text, "");
+	}
+
+	/**
+	 * Returns the shaped text, shaping it if it isn't in the cache.
+	 *
+	 * @param features See {@link TextShaper#shape(IFont, CharSequence, String)}.
+	 */
+	public @NotNull ShapedRun get(IFont font, String text, String features) {
+		Key key = new Key(text, font, features);
+		ShapedRun run = this.runs.get(key);
+		if (run != null) {
+			this.hits++;
+			return run;
+		}
+
+		this.misses++;
+		run = this.shaper.shape(font, text, features);
+		this.runs.put(key, run);
+		return run;
+	}
+
+	/**
+	 * Discards the runs of a font. Needed if its glyphs or metrics change, or once it's deleted.
+	 */
+	public void invalidate(IFont font) {
+		this.runs.keySet().removeIf(key -> key.font == font);
+	}
+
+	public void clear() {
+		this.runs.clear();
+	}
+
+	/**
+	 * @return The amount of runs in the cache.
+	 */
+	public int size() {
+		return this.runs.size();
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return The amount of runs that were found in the cache.
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return The amount of runs that had to be shaped.
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Fonts are compared by identity, as they don't implement {@code equals}.
+	 */
+	private record Key(String text, IFont font, String features) {
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font.shaping;
+
+import dev.seeight.common.lwjgl.font.IFont;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Turns text into positioned glyphs.
+ *
+ * @author C8FF
+ * @see BasicShaper
+ */
+public interface TextShaper {
+	/**
+	 * Shapes a text.
+	 *
+	 * @param font     The font of the text.
+	 * @param text     The text. Lines are separated by {@code '\n'}.
+	 * @param features The font features to enable or disable, comma separated, in the syntax of HarfBuzz: {@code "kern"}
+	 *                 enables kerning and {@code "-kern"} disables it. Features the shaper doesn't support are ignored.
+	 *                 Empty to use the defaults of the shaper.
+	 */
+	@NotNull
+	ShapedRun shape(IFont font, CharSequence text, String features);
+}
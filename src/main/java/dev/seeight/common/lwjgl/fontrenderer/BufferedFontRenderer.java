@@ -18,8 +18,12 @@
 
 package dev.seeight.common.lwjgl.fontrenderer;
 
+import dev.seeight.common.lwjgl.font.FontTextureArray;
+import dev.seeight.common.lwjgl.font.GlyphStore;
 import dev.seeight.common.lwjgl.font.json.CharacterData;
 import dev.seeight.common.lwjgl.font.IFont;
+import dev.seeight.common.lwjgl.font.KerningTable;
+import dev.seeight.common.lwjgl.font.shaping.ShapedRun;
 import dev.seeight.renderer.renderer.gl.GLUtil;
 import dev.seeight.renderer.renderer.gl.OpenGLRenderer2;
 import dev.seeight.renderer.renderer.gl.components.GLArrayBufferObject;
@@ -27,35 +31,75 @@ import dev.seeight.renderer.renderer.gl.components.GLProgram;
 import dev.seeight.renderer.renderer.gl.components.GLVertexArrayObject;
 import dev.seeight.renderer.renderer.gl.exception.UniformNotFoundException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL42;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Builds triangles and uploads them into the GPU using array buffer objects from OpenGL.
- * Uses a program, vertex buffer and array buffer. The main reason this approach is faster
+ * Builds quads and uploads them into the GPU using array buffer objects from OpenGL.
+ * Uses a program, vertex buffer and array buffer. Every glyph is four vertices, drawn as two triangles through an
+ * index buffer that never changes (see {@link GlyphQuadBuffer}). The main reason this approach is faster
  * is that this approach doesn't require a lot of calculations compared to the slower implementation
  * {@link dev.seeight.common.lwjgl.font.FontRenderer}.<p>
- * This is a drop-in replacement for the previous mentioned class.
+ * This is a drop-in replacement for the previous mentioned class.<p>
+ * By default every string is drawn as soon as it's built. Between {@link #begin()} and {@link #end()}, strings are
+ * only appended, and everything is uploaded and drawn at once with one draw call per texture. The color of each
+ * string (see {@link #setColor(float, float, float, float)}) is part of the vertices, so strings of different
+ * colors still share a draw call.<p>
+ * Where the driver supports it, quads are streamed through a persistently mapped {@link PersistentRingBuffer} with a
+ * segment per frame in flight. Call {@link #nextFrame()} once per frame so uploads never wait for the GPU.<p>
+ * Text that doesn't change can be compiled into a {@link TextMesh} once and drawn every frame without rebuilding it.<p>
+ * Vertices can be stored in a compact {@link VertexFormat} to upload less than half the bytes.
  *
  * @author C8FF
  */
 public class BufferedFontRenderer implements IFontRenderer {
 	/**
-	 * This buffer contains all the triangles that are going to be rendered.
+	 * The maximum amount of textures with glyphs waiting to be drawn. Reaching it draws every batch.
 	 */
-	private final FloatBuffer buffer;
+	private static final int MAX_BATCHES = 8;
 	/**
-	 * The count of how many floats have been appended to the {@link #buffer}.
+	 * The default of {@link #setMaxCharacterCapacity(int)}.
 	 */
-	private int length;
+	public static final int DEFAULT_MAX_CHARACTER_CAPACITY = 16384;
 	/**
-	 * The count of how many vertices are going to be rendered.
+	 * The amount of segments of the {@link PersistentRingBuffer}s, one per frame in flight.
 	 */
-	private int vertices;
+	private static final int STREAM_SEGMENTS = 3;
+	/**
+	 * The default of {@link #setFrameCapacity(int)}.
+	 */
+	public static final int DEFAULT_FRAME_CAPACITY = 4096;
+	/**
+	 * The locations of the translation and tint of the vertex shaders. They're never arrays, so every vertex reads the
+	 * value set with {@code glVertexAttrib}, which is how {@link TextMesh}es are moved and tinted.
+	 */
+	private static final int TRANSLATION_ATTRIBUTE = 4;
+	private static final int TINT_ATTRIBUTE = 5;
+
+	/**
+	 * The quads that are going to be rendered, one batch per texture. Batches are created when needed.
+	 */
+	private final Batch[] batches = new Batch[MAX_BATCHES];
+	/**
+	 * The amount of batches in use, at the start of {@link #batches}.
+	 */
+	private int batchCount;
+	/**
+	 * The batch that new quads are appended to.
+	 */
+	private Batch batch;
 	/**
 	 * The scale of the rendering string in the X axis.
 	 */
@@ -64,20 +108,108 @@ public class BufferedFontRenderer implements IFontRenderer {
 	 * The scale of the rendering string in the Y axis.
 	 */
 	private float scaleY = 1;
+	/**
+	 * Whether the kerning of the fonts is applied.
+	 */
+	private boolean kerning = true;
+	/**
+	 * Whether {@link #begin()} was called. Strings are drawn on {@link #flush()} or {@link #end()} instead of right away.
+	 */
+	private boolean batching;
+	/**
+	 * The color of new quads. It's multiplied by the color of the renderer.
+	 */
+	private float red = 1;
+	private float green = 1;
+	private float blue = 1;
+	private float alpha = 1;
 
 	/**
 	 * The program that allows the rendering of the characters.<p>
-	 * This shader uses X, Y, U, V coordinates for each vertex.
+	 * This shader uses X, Y, U, V coordinates and a color for each vertex.
 	 */
 	private final GLProgram program;
+	/**
+	 * The program used with fonts that hold signed distance fields. Created the first time it's needed.
+	 *
+	 * @see IFont#isSDF()
+	 */
+	private GLProgram sdfProgram;
 	/**
 	 * The object which the data is uploaded to.
 	 */
-	private final GLArrayBufferObject vbo;
+	private GLArrayBufferObject vbo;
 	/**
 	 * Determines what is on the {@link #vbo}.
 	 */
-	private final GLVertexArrayObject vao;
+	private GLVertexArrayObject vao;
+	/**
+	 * The size of the data store of the {@link #vbo}, in floats.
+	 */
+	private int vboCapacity;
+	/**
+	 * The persistent mapping of the {@link #vbo}, or {@code null} if the driver doesn't support it. In that case the
+	 * data store is orphaned before every upload.
+	 */
+	private PersistentRingBuffer stream;
+	/**
+	 * The amount of characters each segment of the rings holds, which is what a frame can draw without growing them.
+	 */
+	private int frameCapacity;
+	/**
+	 * Whether {@link #nextFrame()} was ever called. Until then, the rings move to the next segment when one is full.
+	 */
+	private boolean framed;
+	/**
+	 * The indices of the quads, shared by the {@link #vao} and the {@link #arrayVao}. It's only written when it grows.
+	 * Instanced renderers don't have one.
+	 */
+	private final int ebo;
+	/**
+	 * The amount of quads the {@link #ebo} has indices for.
+	 */
+	private int eboQuads;
+
+	/**
+	 * Holds the textures of registered fonts, so their glyphs go into a single batch.
+	 *
+	 * @see #setTextureArray(FontTextureArray)
+	 */
+	private FontTextureArray textureArray;
+	/**
+	 * The program used with {@link #textureArray}. Created the first time an array is set.<p>
+	 * This shader uses X, Y, U, V coordinates, a color and a layer for each vertex.
+	 */
+	private GLProgram arrayProgram;
+	/**
+	 * The program used with {@link #textureArray} when it holds signed distance fields.
+	 */
+	private GLProgram arraySdfProgram;
+	/**
+	 * The object which the data of layered batches is uploaded to.
+	 */
+	private GLArrayBufferObject arrayVbo;
+	/**
+	 * Determines what is on the {@link #arrayVbo}.
+	 */
+	private GLVertexArrayObject arrayVao;
+	/**
+	 * The size of the data store of the {@link #arrayVbo}, in floats.
+	 */
+	private int arrayVboCapacity;
+	/**
+	 * The persistent mapping of the {@link #arrayVbo}, like {@link #stream}.
+	 */
+	private PersistentRingBuffer arrayStream;
+	/**
+	 * The layer of {@link #textureArray} that new quads of the layered batch sample.
+	 */
+	private int layer;
+	/**
+	 * The factors applied to the texture coordinates of new quads of the layered batch.
+	 */
+	private float layerScaleU;
+	private float layerScaleV;
 
 	/**
 	 * Used to restore the renderer's GL objects.
@@ -85,9 +217,54 @@ public class BufferedFontRenderer implements IFontRenderer {
 	private final OpenGLRenderer2 renderer;
 
 	/**
-	 * Represents the maximum amount of characters that the buffer can upload/render at once.
+	 * Represents the amount of characters that the buffer can upload/render at once before growing.
 	 */
 	private final int characterCapacity;
+	/**
+	 * The amount of characters a batch can grow to. Full batches are drawn, and the string continues in an empty one.
+	 */
+	private int maxCharacterCapacity = DEFAULT_MAX_CHARACTER_CAPACITY;
+	/**
+	 * Whether every glyph is uploaded as one instance record, expanded into a quad by the vertex shader.
+	 *
+	 * @see InstancedFontRenderer
+	 */
+	private final boolean instanced;
+	/**
+	 * How vertices are stored in the GPU.
+	 */
+	private final VertexFormat format;
+	/**
+	 * Vertices are packed with this before uploading them, unless the {@link #format} is {@link VertexFormat#FLOAT}.
+	 */
+	private final VertexFormat.Scratch packScratch = new VertexFormat.Scratch();
+	/**
+	 * How wide and tall a batch can be while its positions stay in the range of the {@link #format} around its center.
+	 */
+	private final float maxBatchSpan;
+	/**
+	 * The parts of the {@link TextMesh} being compiled, or {@code null}. Batches are moved here instead of being drawn.
+	 */
+	private List<CompiledPart> compiling;
+	/**
+	 * The bounds of the quads of the {@link TextMesh} being compiled.
+	 */
+	private float compiledMinX;
+	private float compiledMinY;
+	private float compiledMaxX;
+	private float compiledMaxY;
+	/**
+	 * Where the pen ended in the {@link TextMesh} being compiled.
+	 */
+	private float compiledAdvance;
+	/**
+	 * The fraction of the quads of a {@link TextMesh} that can change before it's uploaded whole.
+	 */
+	private float meshUpdateThreshold = 0.5F;
+	/**
+	 * The size of the data stores of every {@link TextMesh} that isn't deleted, in bytes.
+	 */
+	private long meshMemory;
 
 	/**
 	 * Constructs a font renderer.
@@ -104,30 +281,59 @@ public class BufferedFontRenderer implements IFontRenderer {
 	 *
 	 * @param renderer          An OpenGLRenderer2 instance. This is not used to render
 	 *                          the characters, but to restore the {@code program}, {@code vbo}, and {@code vao}.
-	 * @param characterCapacity The maximum character capacity of the buffer.
+	 * @param characterCapacity The initial character capacity of the buffer. Longer strings grow it up to
+	 *                          {@link #getMaxCharacterCapacity()} characters, and are drawn in several parts after that.
 	 */
 	public BufferedFontRenderer(OpenGLRenderer2 renderer, int characterCapacity) {
+		this(renderer, characterCapacity, false, VertexFormat.FLOAT);
+	}
+
+	/**
+	 * Constructs a font renderer.
+	 *
+	 * @param format How vertices are stored in the GPU. {@link VertexFormat#SHORT} is the recommended compact format.
+	 * @see #BufferedFontRenderer(OpenGLRenderer2, int)
+	 */
+	public BufferedFontRenderer(OpenGLRenderer2 renderer, int characterCapacity, VertexFormat format) {
+		this(renderer, characterCapacity, false, format);
+	}
+
+	/**
+	 * Constructs a font renderer.
+	 *
+	 * @param instanced Whether every glyph is uploaded as one instance record. The vertex shaders must expand the records
+	 *                  into quads (see {@link InstancedFontRenderer}).
+	 * @param format    How vertices are stored in the GPU.
+	 */
+	protected BufferedFontRenderer(OpenGLRenderer2 renderer, int characterCapacity, boolean instanced, VertexFormat format) {
 		this.renderer = renderer;
 		this.characterCapacity = characterCapacity;
-
-		// Two floats, two vertices, three per triangle, two triangles.
-		this.buffer = BufferUtils.createFloatBuffer(characterCapacity * 2 * 2 * 3 * 2);
+		this.instanced = instanced;
+		this.format = format;
+		// One unit is lost to rounding the origin down.
+		this.maxBatchSpan = 2 * (format.getPositionRange() - 1);
 
 		// Create shader
 		this.program = new GLProgram();
 		this.program.delete();
-		this.program.init(this.getVertexSource(), this.getFragmentSource());
+		this.program.init(this.withDefines(this.getVertexSource()), this.getFragmentSource());
 		this.renderer.useProgram(this.program);
 
 		// Create vbo.
 		this.vbo = new GLArrayBufferObject();
 		this.vbo.init(true);
 		// Allocate the maximum capacity.
-		GLUtil.arrayBufferData(this.buffer.capacity() * Float.BYTES, GL15.GL_STATIC_DRAW);
+		this.vboCapacity = GlyphQuadBuffer.getCapacity(characterCapacity, instanced);
+		this.frameCapacity = Math.max(DEFAULT_FRAME_CAPACITY, characterCapacity);
+		this.stream = this.createDataStore(this.vboCapacity, false);
 
 		// Define what's on the array buffer.
-		this.vao = new GLVertexArrayObject.Builder().floatAttribute(4).build();
-		GL30.glEnableVertexAttribArray(0);
+		this.ebo = instanced ? 0 : GL15.glGenBuffers();
+		this.vao = this.createVao(false);
+		if (!instanced) {
+			this.eboQuads = characterCapacity;
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, GlyphQuadBuffer.createIndices(this.eboQuads), GL15.GL_STATIC_DRAW);
+		}
 
 		// Restore renderer's objects.
 		this.renderer.useDefaultProgram();
@@ -140,34 +346,59 @@ public class BufferedFontRenderer implements IFontRenderer {
 		if (characters.length == 0)
 			return x;
 
-		if (characterCapacity <= end)
-			end = characterCapacity;
-
 		IFontRenderer.assertIndices(characters.length, start, end);
 
-		// Build triangles.
-		length = 0;
-		vertices = 0;
-		buffer.clear();
+		// Build quads.
+		if (!this.batching) {
+			this.clearBatches();
+		}
 		float maxX = x;
+		KerningTable kerningTable = null;
+		IFont previousFont = null;
+		int previous = -1;
 		for (int i = start; i < end; i++) {
 			int codePoint = characters[i];
 			if (isNewLine(codePoint)) {
 				x = startX;
 				y += getNewLineHeight(font);
+				previous = -1;
+				continue;
+			}
+
+			// Fonts made of other fonts tell which one has the glyph.
+			IFont glyphFont = font.getGlyphFont(codePoint);
+			if (glyphFont != previousFont) {
+				kerningTable = this.kerning ? glyphFont.getKerningTable() : null;
+			} else if (kerningTable != null && previous != -1) {
+				x += kerningTable.get(previous, codePoint) * this.scaleX;
+			}
+			previousFont = glyphFont;
+			previous = codePoint;
+
+			// Read the packed metrics directly when the font has them.
+			GlyphStore store = glyphFont.getGlyphStore();
+			if (store != null) {
+				int slot = glyphFont.getGlyphSlot(codePoint);
+				if (slot != -1) {
+					drawSlot(glyphFont, store, slot, x, y);
+					x += store.getAdvance(slot) * this.scaleX;
+				} else {
+					drawInvalidChar(font, codePoint, x, y);
+					x += getCharacterWidth(font, null, codePoint);
+				}
 				continue;
 			}
 
 			// These used to render the characters directly, but now they append
 			// triangles into the buffer.
-			CharacterData data = font.getCharacterData(codePoint);
+			CharacterData data = glyphFont.getCharacterData(codePoint);
 			if (data != null) {
-				drawChar(font, data, x, y);
+				drawChar(glyphFont, data, x, y);
 			} else {
 				drawInvalidChar(font, codePoint, x, y);
 			}
 
-			x += getCharacterWidth(font, data, codePoint);
+			x += getCharacterWidth(glyphFont, data, codePoint);
 		}
 
 		// Adjust the return value
@@ -175,148 +406,1337 @@ public class BufferedFontRenderer implements IFontRenderer {
 			maxX = x;
 		}
 
-		// Bind the texture
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, font.getTexture().getId());
-
-		// Start rendering
-		this.renderer.useProgram(this.program);
-		this.vbo.bind();
-		this.vao.bind();
+		if (!this.batching) {
+			this.drawBatches();
+		}
 
-		// Upload characters
-		// The buffer is limited to prevent uploading more than needed.
-		this.buffer.position(0);
-		GLUtil.arrayBufferSubData(0, this.buffer.limit(this.length));
+		return maxX;
+	}
 
-		// Upload uniforms to the shader.
-		try {
-			this.renderer.uploadColor();
-			this.renderer.uploadProjectionAndView();
-		} catch (UniformNotFoundException ignored) {
+	/**
+	 * Starts batching: strings are only appended until {@link #flush()} or {@link #end()} draws them, with one upload and
+	 * one draw call per texture. Anything else drawn with the renderer in between ends up below the strings, as they
+	 * are drawn later.<p>
+	 * Batches grow as needed up to {@link #getMaxCharacterCapacity()} characters. Full batches are drawn early.
+	 */
+	public void begin() {
+		if (!this.batching) {
+			this.clearBatches();
+			this.batching = true;
 		}
+	}
 
-		// Draw all necessary vertices.
-		GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, this.vertices);
+	/**
+	 * Draws every string appended since {@link #begin()} or the last flush, and keeps batching.
+	 */
+	public void flush() {
+		this.drawBatches();
+	}
 
-		// Restore the renderer's objects.
-		this.renderer.useDefaultProgram();
-		this.renderer.useDefaultVao();
-		this.renderer.useDefaultVbo();
+	/**
+	 * Draws every string appended since {@link #begin()} or the last flush, and stops batching.
+	 */
+	public void end() {
+		this.drawBatches();
+		this.batching = false;
+	}
 
-		return maxX;
+	/**
+	 * @return True between {@link #begin()} and {@link #end()}.
+	 */
+	public boolean isBatching() {
+		return this.batching;
 	}
 
-	@Override
-	public void setScaleX(float scaleX) {
-		this.scaleX = scaleX;
+	/**
+	 * Sets the color of the next strings. It's stored in their vertices and multiplied by the color of the renderer,
+	 * so strings of several colors can be drawn in the same batch.
+	 */
+	public void setColor(float red, float green, float blue, float alpha) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.alpha = alpha;
 	}
 
-	@Override
-	public void setScaleY(float scaleY) {
-		this.scaleY = scaleY;
+	public float getRed() {
+		return this.red;
 	}
 
-	@Override
-	public float getScaleX() {
-		return this.scaleX;
+	public float getGreen() {
+		return this.green;
 	}
 
-	@Override
-	public float getScaleY() {
-		return this.scaleY;
+	public float getBlue() {
+		return this.blue;
+	}
+
+	public float getAlpha() {
+		return this.alpha;
 	}
 
+	/**
+	 * {@inheritDoc}<p>
+	 * The glyphs are batched and drawn the same way as {@link #drawString(IFont, char[], float, float, float, int, int)}.
+	 */
 	@Override
-	public void drawChar(IFont font, @NotNull CharacterData data, float _x, float _y) {
-		float x = _x + data.renderOriginX * this.getScaleX();
-		float y = _y + data.renderOriginY * this.getScaleY();
-		float x2 = x + data.renderWidth * this.getScaleX();
-		float y2 = y + data.renderHeight * this.getScaleY();
+	public float drawShaped(ShapedRun run, float x, float y) {
+		if (!this.batching) {
+			this.clearBatches();
+		}
+		for (int i = 0; i < run.size(); i++) {
+			IFont glyphFont = run.getGlyphFont(i);
+			int glyph = run.getGlyph(i);
+			float glyphX = x + run.getX(i) * this.scaleX;
+			float glyphY = y + run.getY(i) * this.scaleY;
 
-		float u = (float) data.u();
-		float v = (float) data.v();
-		float u2 = (float) data.u2();
-		float v2 = (float) data.v2();
+			// Same as drawString, but the glyphs are looked up by their glyph index.
+			GlyphStore store = glyphFont.getGlyphStore();
+			if (store != null) {
+				int slot = glyphFont.getGlyphSlotByIndex(glyph);
+				if (slot != -1) {
+					drawSlot(glyphFont, store, slot, glyphX, glyphY);
+				} else {
+					// The codepoint isn't known after shaping.
+					drawInvalidChar(run.getFont(), -1, glyphX, glyphY);
+				}
+				continue;
+			}
 
-		// x, y                 x2, y
-		// x----------|---------x
-		// |                    |
-		// |                    |
-		// |                    |
-		// |                    |
-		// x----------|---------x
-		// x, y2                x2, y2
+			CharacterData data = glyphFont.getCharacterDataByIndex(glyph);
+			if (data != null) {
+				drawChar(glyphFont, data, glyphX, glyphY);
+			} else {
+				drawInvalidChar(run.getFont(), -1, glyphX, glyphY);
+			}
+		}
+		if (!this.batching) {
+			this.drawBatches();
+		}
 
-		// First triangle
-		this.buffer.put(x).put(y);
-		this.buffer.put(u).put(v);
+		return x + run.getWidth() * this.scaleX;
+	}
 
-		this.buffer.put(x2).put(y);
-		this.buffer.put(u2).put(v);
+	/**
+	 * Adds the quad of a glyph of a glyph store to the batch of its page.
+	 * Uses the subpixel variant rasterized closest to the pen position, drawn at a whole pixel.
+	 *
+	 * @param slot The slot of the glyph in the store.
+	 */
+	private void drawSlot(IFont glyphFont, GlyphStore store, int slot, float x, float y) {
+		// Glyphs without pixels don't need any triangle.
+		int glyphPage = glyphFont.getGlyphPage(slot);
+		if (glyphPage == -1) {
+			return;
+		}
 
-		this.buffer.put(x2).put(y2);
-		this.buffer.put(u2).put(v2);
+		selectBatch(glyphFont, glyphPage);
+		int variants = glyphFont.getSubpixelVariants();
+		if (variants > 1) {
+			drawGlyph(store.getData(), (slot + IFontRenderer.getSubpixelVariant(x, variants)) * GlyphStore.STRIDE, IFontRenderer.getSubpixelPen(x, variants), y);
+		} else {
+			drawGlyph(store.getData(), slot * GlyphStore.STRIDE, x, y);
+		}
+	}
 
-		// Second triangle
-		this.buffer.put(x2).put(y2);
-		this.buffer.put(u2).put(v2);
+	/**
+	 * Compiles a string into a mesh.
+	 *
+	 * @see #compile(IFont, char[], int, int)
+	 */
+	public @NotNull TextMesh compile(IFont font, String string) {
+		return this.compile(font, string.toCharArray(), 0, string.length());
+	}
 
-		this.buffer.put(x).put(y2);
-		this.buffer.put(u).put(v2);
+	/**
+	 * Builds the quads of a string once and keeps them in a {@link TextMesh}, to be drawn with
+	 * {@link #drawMesh(TextMesh, float, float)} any amount of times. The string starts at {@code 0, 0}, with the current
+	 * scale, color and texture array. Strings appended since {@link #begin()} are drawn first.<p>
+	 * Glyphs with subpixel variants are picked for that start, so meshes look best drawn at whole pixels.
+	 *
+	 * @throws IllegalArgumentException  If the text goes further from its start than the
+	 *                                   {@linkplain VertexFormat#getPositionRange() range} of the vertex format.
+	 * @throws IndexOutOfBoundsException If {@code start} or {@code end} are out of bounds.
+	 */
+	public @NotNull TextMesh compile(IFont font, char @NotNull [] characters, int start, int end) throws IndexOutOfBoundsException {
+		List<CompiledPart> parts = this.build(font, characters, start, end);
+		TextMesh mesh = new TextMesh(this, this.createMeshVbo());
+		this.rebuild(mesh, parts, false);
+		return mesh;
+	}
 
-		this.buffer.put(x).put(y);
-		this.buffer.put(u).put(v);
+	/**
+	 * Builds the quads of a shaped run once and keeps them in a {@link TextMesh}, like {@link #compile(IFont, char[], int, int)}.
+	 */
+	public @NotNull TextMesh compile(ShapedRun run) {
+		List<CompiledPart> parts = this.build(run);
+		TextMesh mesh = new TextMesh(this, this.createMeshVbo());
+		this.rebuild(mesh, parts, false);
+		return mesh;
+	}
 
-		// Count the used space and how many vertices were written.
-		this.length += 3 * 2 * 4;
-		this.vertices += 6;
+	/**
+	 * Changes the text of a mesh.
+	 *
+	 * @see #update(TextMesh, IFont, char[], int, int)
+	 */
+	public int update(TextMesh mesh, IFont font, String string) {
+		return this.update(mesh, font, string.toCharArray(), 0, string.length());
 	}
 
-	@Override
-	public void drawInvalidChar(IFont font, int codepoint, float x, float y) {
+	/**
+	 * Changes the text of a mesh, like compiling it again. The new quads are compared with the ones of the mesh, and
+	 * only the range of quads that changed in each texture is uploaded, so text that changes a few characters at a
+	 * time (like counters and timers) uploads a few glyphs.<p>
+	 * The data store is only rebuilt if the new text needs more quads than a texture has space for, or other textures.
+	 * Rebuilt meshes keep some spare space. If more than {@link #getMeshUpdateThreshold()} of the quads changed, the
+	 * data store is uploaded whole instead.
+	 *
+	 * @return The amount of bytes uploaded.
+	 * @throws IllegalArgumentException  If the mesh was compiled by another renderer, or the text goes further from its
+	 *                                   start than the range of the vertex format. The mesh is left as it was.
+	 * @throws IllegalStateException     If the mesh was deleted.
+	 * @throws IndexOutOfBoundsException If {@code start} or {@code end} are out of bounds.
+	 */
+	public int update(TextMesh mesh, IFont font, char @NotNull [] characters, int start, int end) throws IndexOutOfBoundsException {
+		assertMesh(mesh);
+		return this.update(mesh, this.build(font, characters, start, end));
+	}
 
+	/**
+	 * Changes the shaped run of a mesh, like {@link #update(TextMesh, IFont, char[], int, int)}.
+	 *
+	 * @return The amount of bytes uploaded.
+	 */
+	public int update(TextMesh mesh, ShapedRun run) {
+		assertMesh(mesh);
+		return this.update(mesh, this.build(run));
 	}
 
-	@Override
-	public void delete() {
-		this.program.delete();
-		this.vbo.delete();
-		this.vao.delete();
+	private void assertMesh(TextMesh mesh) {
+		if (mesh.renderer != this) throw new IllegalArgumentException("The mesh was compiled by another renderer");
+		if (mesh.isDeleted()) throw new IllegalStateException("The mesh was deleted");
 	}
 
-	public int getCharacterCapacity() {
-		return characterCapacity;
+	/**
+	 * Builds the quads of a string into parts, without drawing them.
+	 */
+	private List<CompiledPart> build(IFont font, char @NotNull [] characters, int start, int end) {
+		if (characters.length != 0) {
+			IFontRenderer.assertIndices(characters.length, start, end);
+		}
+
+		this.startCompiling();
+		try {
+			this.compiledAdvance = this.drawString(font, characters, 0, 0, 0, start, end);
+			this.drawBatches();
+		} catch (RuntimeException e) {
+			this.clearBatches();
+			this.finishCompiling();
+			throw e;
+		}
+		return this.finishCompiling();
 	}
 
-	protected String getVertexSource() {
-		return """
-				#version 430
+	/**
+	 * Builds the quads of a shaped run into parts, without drawing them.
+	 */
+	private List<CompiledPart> build(ShapedRun run) {
+		this.startCompiling();
+		try {
+			this.compiledAdvance = this.drawShaped(run, 0, 0);
+			this.drawBatches();
+		} catch (RuntimeException e) {
+			this.clearBatches();
+			this.finishCompiling();
+			throw e;
+		}
+		return this.finishCompiling();
+	}
 
-				layout (location = 0) in vec4 vertex;
+	/**
+	 * Makes batches be kept for a mesh instead of drawn. Pending batches are drawn first.
+	 */
+	private void startCompiling() {
+		this.drawBatches();
+		this.compiling = new ArrayList<>();
+		this.compiledMinX = Float.POSITIVE_INFINITY;
+		this.compiledMinY = Float.POSITIVE_INFINITY;
+		this.compiledMaxX = Float.NEGATIVE_INFINITY;
+		this.compiledMaxY = Float.NEGATIVE_INFINITY;
+	}
 
-				uniform mat4 projection;
-				uniform mat4 view;
+	private List<CompiledPart> finishCompiling() {
+		List<CompiledPart> parts = this.compiling;
+		this.compiling = null;
+		return parts;
+	}
 
-				out vec2 fragCoords;
+	private GLArrayBufferObject createMeshVbo() {
+		GLArrayBufferObject vbo = new GLArrayBufferObject();
+		vbo.init(true);
+		this.renderer.useDefaultVbo();
+		return vbo;
+	}
 
-				void main() {
-					gl_Position = projection * view * vec4(vertex.xy, 0.0, 1.0);
-					fragCoords = vertex.zw;
-				}""";
+	/**
+	 * Uploads the quads that changed into the data store of a mesh, or rebuilds it if they don't fit.
+	 *
+	 * @return The amount of bytes uploaded.
+	 */
+	private int update(TextMesh mesh, List<CompiledPart> compiled) {
+		TextMesh.Part[] parts = mesh.parts;
+		if (parts.length != compiled.size()) {
+			return this.rebuild(mesh, compiled, true);
+		}
+		for (int i = 0; i < parts.length; i++) {
+			TextMesh.Part part = parts[i];
+			CompiledPart compiledPart = compiled.get(i);
+			if (part.font() != compiledPart.font || part.page() != compiledPart.page || part.layered() != compiledPart.layered
+					|| part.capacity() < compiledPart.quads || part.layered() && mesh.textureArray != this.textureArray) {
+				return this.rebuild(mesh, compiled, true);
+			}
+		}
+
+		// Find the range of floats that changed in every part, rounded to whole quads.
+		FloatBuffer data = mesh.data;
+		int[] from = new int[parts.length];
+		int[] to = new int[parts.length];
+		int changed = 0;
+		int used = 0;
+		for (int i = 0; i < parts.length; i++) {
+			TextMesh.Part part = parts[i];
+			CompiledPart compiledPart = compiled.get(i);
+			FloatBuffer quads = compiledPart.data;
+			int quadFloats = quads.remaining() / compiledPart.quads;
+			int first = -1;
+			int last = -1;
+			for (int j = 0; j < quads.remaining(); j++) {
+				if (data.get(part.offset() + j) != quads.get(j)) {
+					if (first == -1) first = j;
+					last = j;
+				}
+			}
+			if (first != -1) {
+				from[i] = first / quadFloats * quadFloats;
+				to[i] = (last / quadFloats + 1) * quadFloats;
+				changed += to[i] - from[i];
+			}
+			used += quads.remaining();
+
+			data.put(part.offset(), quads, 0, quads.remaining());
+			parts[i] = new TextMesh.Part(part.font(), part.page(), part.layered(), part.offset(), part.base(), compiledPart.quads, part.capacity());
+		}
+		if (compiled.isEmpty()) {
+			mesh.set(parts, this.compiledAdvance, 0, 0, 0, 0);
+		} else {
+			mesh.set(parts, this.compiledAdvance, this.compiledMinX, this.compiledMinY, this.compiledMaxX, this.compiledMaxY);
+		}
+		if (changed == 0) {
+			return 0;
+		}
+
+		mesh.vbo.bind();
+		int uploaded;
+		if (changed > used * this.meshUpdateThreshold) {
+			ByteBuffer image = this.packMesh(mesh);
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, image);
+			uploaded = image.remaining();
+		} else {
+			uploaded = 0;
+			for (int i = 0; i < parts.length; i++) {
+				if (from[i] != to[i]) {
+					TextMesh.Part part = parts[i];
+					int floatStride = GlyphQuadBuffer.getStride(this.instanced, part.layered());
+					ByteBuffer packed = this.pack(data.slice(part.offset() + from[i], to[i] - from[i]), part.layered());
+					long offset = (long) (part.base() + from[i] / floatStride) * this.format.getStride(this.instanced, part.layered());
+					GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, offset, packed);
+					uploaded += packed.remaining();
+				}
+			}
+		}
+		this.renderer.useDefaultVbo();
+		return uploaded;
 	}
 
-	protected String getFragmentSource() {
-		return """
-				#version 430
+	/**
+	 * Lays out the compiled parts into a new data store for a mesh. Parts that use their own texture go first,
+	 * followed by the ones that use the {@link #textureArray}, each group starting at a multiple of its stride so
+	 * parts can be drawn with a base vertex.
+	 *
+	 * @param spare Whether to leave space for more quads in every part.
+	 * @return The amount of bytes uploaded.
+	 */
+	private int rebuild(TextMesh mesh, List<CompiledPart> compiled, boolean spare) {
+		TextMesh.Part[] parts = new TextMesh.Part[compiled.size()];
+		int floats = 0;
+		boolean plain = false;
+		boolean layeredParts = false;
+		for (int pass = 0; pass < 2; pass++) {
+			boolean layered = pass == 1;
+			int stride = GlyphQuadBuffer.getStride(this.instanced, layered);
+			if (layered) {
+				floats = (floats + stride - 1) / stride * stride;
+			}
+			for (int i = 0; i < parts.length; i++) {
+				CompiledPart part = compiled.get(i);
+				if (part.layered == layered) {
+					int capacity = spare ? part.quads + Math.max(part.quads / 4, 4) : part.quads;
+					parts[i] = new TextMesh.Part(part.font, part.page, layered, floats, floats / stride, part.quads, capacity);
+					floats += capacity * (part.data.remaining() / part.quads);
+					plain |= !layered;
+					layeredParts |= layered;
+				}
+			}
+		}
 
-				uniform sampler2D t;
+		FloatBuffer data = BufferUtils.createFloatBuffer(Math.max(floats, 1));
+		for (int i = 0; i < parts.length; i++) {
+			FloatBuffer quads = compiled.get(i).data;
+			data.put(parts[i].offset(), quads, 0, quads.remaining());
+		}
+		mesh.data = data;
+		// Retain the new pages before releasing the old ones, so pages used by both are never released.
+		retainPages(parts);
+		if (mesh.parts != null) {
+			releasePages(mesh.parts);
+		}
+		mesh.parts = parts;
+		ByteBuffer image = this.packMesh(mesh);
 
-				uniform vec4 shapeColor;
-				in vec2 fragCoords;
-				out vec4 color;
+		mesh.vbo.bind();
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, image, spare ? GL15.GL_DYNAMIC_DRAW : GL15.GL_STATIC_DRAW);
+		if (plain && mesh.vao == null) {
+			mesh.vao = this.createVao(false);
+		}
+		if (layeredParts && mesh.layeredVao == null) {
+			mesh.layeredVao = this.createVao(true);
+		}
+		this.renderer.useDefaultVao();
+		this.renderer.useDefaultVbo();
 
-				void main() {
-					color = texture2D(t, fragCoords) * shapeColor;
-				}""";
+		this.meshMemory += image.capacity() - mesh.getSize();
+		mesh.size = image.capacity();
+		mesh.textureArray = layeredParts ? this.textureArray : null;
+		if (compiled.isEmpty()) {
+			mesh.set(parts, this.compiledAdvance, 0, 0, 0, 0);
+		} else {
+			mesh.set(parts, this.compiledAdvance, this.compiledMinX, this.compiledMinY, this.compiledMaxX, this.compiledMaxY);
+		}
+		return image.capacity();
+	}
+
+	/**
+	 * Packs every part of a mesh into the {@link #format}, at the offsets of their base vertices.
+	 * Groups of parts keep the order they have in the floats of the mesh, and packed vertices are never larger, so the
+	 * groups don't overlap.
+	 *
+	 * @return The contents of the data store of the mesh.
+	 */
+	private ByteBuffer packMesh(TextMesh mesh) {
+		int records = this.instanced ? 1 : GlyphQuadBuffer.VERTICES_PER_QUAD;
+		int bytes = 0;
+		for (TextMesh.Part part : mesh.parts) {
+			bytes = Math.max(bytes, (part.base() + part.capacity() * records) * this.format.getStride(this.instanced, part.layered()));
+		}
+
+		ByteBuffer image = BufferUtils.createByteBuffer(Math.max(bytes, 1));
+		for (TextMesh.Part part : mesh.parts) {
+			int quadFloats = records * GlyphQuadBuffer.getStride(this.instanced, part.layered());
+			ByteBuffer packed = this.pack(mesh.data.slice(part.offset(), part.capacity() * quadFloats), part.layered());
+			image.put(part.base() * this.format.getStride(this.instanced, part.layered()), packed, 0, packed.remaining());
+		}
+		return image;
+	}
+
+	/**
+	 * Draws a mesh with the color it was compiled with.
+	 *
+	 * @see #drawMesh(TextMesh, float, float, float, float, float, float)
+	 */
+	public void drawMesh(TextMesh mesh, float x, float y) {
+		this.drawMesh(mesh, x, y, 1, 1, 1, 1);
+	}
+
+	/**
+	 * Draws a mesh compiled by this renderer, with one draw call per texture and no work per glyph.
+	 * It's drawn right away, even between {@link #begin()} and {@link #end()}.
+	 *
+	 * @param x     The X position of the start of the text.
+	 * @param y     The Y position of the start of the text.
+	 * @param red   Multiplies the color the mesh was compiled with.
+	 * @param green Multiplies the color the mesh was compiled with.
+	 * @param blue  Multiplies the color the mesh was compiled with.
+	 * @param alpha Multiplies the color the mesh was compiled with.
+	 * @throws IllegalArgumentException If the mesh was compiled by another renderer.
+	 * @throws IllegalStateException    If the mesh was deleted.
+	 */
+	public void drawMesh(TextMesh mesh, float x, float y, float red, float green, float blue, float alpha) {
+		assertMesh(mesh);
+		if (mesh.parts.length == 0) {
+			return;
+		}
+
+		GL20.glVertexAttrib2f(TRANSLATION_ATTRIBUTE, x, y);
+		GL20.glVertexAttrib4f(TINT_ATTRIBUTE, red, green, blue, alpha);
+		for (TextMesh.Part part : mesh.parts) {
+			this.useTexture(part.font(), part.page(), part.layered() ? mesh.textureArray : null);
+			(part.layered() ? mesh.layeredVao : mesh.vao).bind();
+			this.drawQuads(part.quads(), part.base());
+		}
+
+		// Restore the renderer's objects.
+		this.renderer.useDefaultProgram();
+		this.renderer.useDefaultVao();
+		this.renderer.useDefaultVbo();
+	}
+
+	void onMeshDeleted(TextMesh mesh) {
+		this.meshMemory -= mesh.getSize();
+		releasePages(mesh.parts);
+	}
+
+	/**
+	 * Keeps the glyphs sampled by the parts of a mesh in their pages, so fonts that rasterize glyphs on demand don't
+	 * reuse them while the mesh exists.
+	 */
+	private static void retainPages(TextMesh.Part[] parts) {
+		for (TextMesh.Part part : parts) {
+			part.font().retainPage(part.page());
+		}
+	}
+
+	private static void releasePages(TextMesh.Part[] parts) {
+		for (TextMesh.Part part : parts) {
+			part.font().releasePage(part.page());
+		}
+	}
+
+	/**
+	 * @return The size of the data stores of every mesh compiled by this renderer that wasn't deleted, in bytes.
+	 */
+	public long getMeshMemory() {
+		return this.meshMemory;
+	}
+
+	public float getMeshUpdateThreshold() {
+		return this.meshUpdateThreshold;
+	}
+
+	/**
+	 * Sets the fraction of the quads of a mesh that can change in {@link #update(TextMesh, IFont, char[], int, int)}
+	 * before the whole data store is uploaded, instead of one range per texture.
+	 */
+	public void setMeshUpdateThreshold(float meshUpdateThreshold) {
+		this.meshUpdateThreshold = meshUpdateThreshold;
+	}
+
+	/**
+	 * Sets the texture array used to draw the fonts registered in it. The glyphs of every registered font go into
+	 * one batch, drawn with a single texture bind and draw call. Other fonts still use their own textures.<p>
+	 * The array isn't deleted by this renderer.
+	 *
+	 * @param textureArray The array, or {@code null} to always use the textures of the fonts.
+	 */
+	public void setTextureArray(@Nullable FontTextureArray textureArray) {
+		if (textureArray != null && this.arrayProgram == null) {
+			this.arrayProgram = new GLProgram();
+			this.arrayProgram.delete();
+			this.arrayProgram.init(this.withDefines(this.getArrayVertexSource()), this.getArrayFragmentSource(false));
+
+			this.arrayVbo = new GLArrayBufferObject();
+			this.arrayVbo.init(true);
+			this.arrayVboCapacity = GlyphQuadBuffer.getCapacity(this.characterCapacity, this.instanced);
+			this.arrayStream = this.createDataStore(this.arrayVboCapacity, true);
+
+			this.arrayVao = this.createVao(true);
+
+			this.renderer.useDefaultProgram();
+			this.renderer.useDefaultVao();
+			this.renderer.useDefaultVbo();
+		}
+
+		this.textureArray = textureArray;
+	}
+
+	public @Nullable FontTextureArray getTextureArray() {
+		return this.textureArray;
+	}
+
+	/**
+	 * Allocates the data store of the bound array buffer, mapping it persistently if the driver supports it. The
+	 * segments of the ring hold {@link #frameCapacity} characters.
+	 *
+	 * @param capacity The size of a regular data store, in floats.
+	 * @param layered  Whether the quads have a layer of the {@link #textureArray}.
+	 * @return The ring, or {@code null} if the data store is a regular one.
+	 */
+	private @Nullable PersistentRingBuffer createDataStore(int capacity, boolean layered) {
+		if (PersistentRingBuffer.isSupported()) {
+			// One more quad leaves space to align the writes.
+			long segmentSize = (long) (this.frameCapacity + 1) * this.getQuadBytes(layered);
+			return new PersistentRingBuffer((int) Math.min(segmentSize, Integer.MAX_VALUE), STREAM_SEGMENTS);
+		}
+
+		GLUtil.arrayBufferData((long) capacity * Float.BYTES, GL15.GL_STREAM_DRAW);
+		return null;
+	}
+
+	/**
+	 * @return The size of a quad in the GPU, in bytes.
+	 */
+	private int getQuadBytes(boolean layered) {
+		int stride = this.format.getStride(this.instanced, layered);
+		return this.instanced ? stride : stride * GlyphQuadBuffer.VERTICES_PER_QUAD;
+	}
+
+	/**
+	 * Replaces a ring whose segments are too small with one that holds {@link #frameCapacity} characters per segment.
+	 * The data store of a ring can't be resized, so the array buffer and the vertex array object are replaced too, and
+	 * left bound. Draws that already read the old buffer are unaffected.
+	 *
+	 * @param layered Whether to replace the ring of the {@link #arrayVbo}.
+	 * @return The new ring.
+	 */
+	private PersistentRingBuffer replaceStream(boolean layered) {
+		GLArrayBufferObject vbo = new GLArrayBufferObject();
+		vbo.init(true);
+		PersistentRingBuffer stream = this.createDataStore(0, layered);
+		GLVertexArrayObject vao = this.createVao(layered);
+
+		if (layered) {
+			this.arrayStream.delete();
+			this.arrayVbo.delete();
+			this.arrayVao.delete();
+			this.arrayVbo = vbo;
+			this.arrayVao = vao;
+			this.arrayStream = stream;
+		} else {
+			this.stream.delete();
+			this.vbo.delete();
+			this.vao.delete();
+			this.vbo = vbo;
+			this.vao = vao;
+			this.stream = stream;
+		}
+		return stream;
+	}
+
+	/**
+	 * Ends a frame. The quads streamed from now on go into the next segment of the rings, and the segment of the frame
+	 * before the previous one is only reused once the GPU is done reading it. Call it once per frame, after drawing
+	 * every string; the renderer then only waits for the GPU if it's more than two frames behind.<p>
+	 * Frames that stream more than {@link #getFrameCapacity()} characters grow the rings. Until this is called for
+	 * the first time, the rings move to the next segment whenever one is full instead, which can wait for the draws of
+	 * the same frame. Does nothing if the driver doesn't support persistent mapping.
+	 */
+	public void nextFrame() {
+		this.framed = true;
+		if (this.stream != null) {
+			this.stream.nextFrame();
+		}
+		if (this.arrayStream != null) {
+			this.arrayStream.nextFrame();
+		}
+	}
+
+	/**
+	 * @return The amount of characters a frame can stream before the rings grow.
+	 */
+	public int getFrameCapacity() {
+		return this.frameCapacity;
+	}
+
+	/**
+	 * Sets the amount of characters a frame can stream before the rings grow, see {@link #nextFrame()}. The rings are
+	 * replaced right away if they're smaller, and never shrink.
+	 *
+	 * @param frameCapacity The amount of characters, of every texture, drawn in a frame.
+	 */
+	public void setFrameCapacity(int frameCapacity) {
+		if (frameCapacity <= 0) throw new IllegalArgumentException("frameCapacity <= 0");
+		if (frameCapacity <= this.frameCapacity) {
+			return;
+		}
+
+		this.frameCapacity = frameCapacity;
+		if (this.stream != null) {
+			this.replaceStream(false);
+		}
+		if (this.arrayStream != null) {
+			this.replaceStream(true);
+		}
+
+		this.renderer.useDefaultVao();
+		this.renderer.useDefaultVbo();
+	}
+
+	/**
+	 * Creates a vertex array object that reads quads from the bound array buffer, and leaves it bound.
+	 *
+	 * @param layered Whether the quads have a layer of the {@link #textureArray}.
+	 */
+	private GLVertexArrayObject createVao(boolean layered) {
+		// Positions, texture coordinates and color.
+		int components = this.instanced ? 4 : 2;
+		GLVertexArrayObject.Builder builder = new GLVertexArrayObject.Builder().floatAttribute(components).floatAttribute(components).floatAttribute(4);
+		if (layered) {
+			builder = builder.floatAttribute(1);
+		}
+		GLVertexArrayObject vao = builder.build();
+
+		if (this.format != VertexFormat.FLOAT) {
+			// The builder only knows float attributes, so the compact ones are specified again.
+			int stride = this.format.getStride(this.instanced, layered);
+			int positionType = this.format == VertexFormat.HALF_FLOAT ? GL30.GL_HALF_FLOAT : GL11.GL_SHORT;
+			GL20.glVertexAttribPointer(0, components, positionType, false, stride, 0);
+			GL20.glVertexAttribPointer(1, components, GL11.GL_UNSIGNED_SHORT, true, stride, (long) components * Short.BYTES);
+			GL20.glVertexAttribPointer(2, 4, GL11.GL_UNSIGNED_BYTE, true, stride, (long) components * Short.BYTES * 2);
+			if (layered) {
+				GL20.glVertexAttribPointer(3, 1, GL11.GL_UNSIGNED_SHORT, false, stride, (long) components * Short.BYTES * 2 + 4);
+			}
+		}
+
+		int attributes = layered ? 4 : 3;
+		for (int i = 0; i < attributes; i++) {
+			GL30.glEnableVertexAttribArray(i);
+			if (this.instanced) {
+				// Records advance once per instance instead of per vertex.
+				GL33.glVertexAttribDivisor(i, 1);
+			}
+		}
+		if (!this.instanced) {
+			// The element buffer binding is part of the vao.
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.ebo);
+		}
+		return vao;
+	}
+
+	/**
+	 * Defines {@code POSITION_SCALE} in a vertex shader, what the positions of the {@link #format} are multiplied by.
+	 */
+	private String withDefines(String vertexSource) {
+		int line = vertexSource.indexOf('\n') + 1;
+		return vertexSource.substring(0, line) + "#define POSITION_SCALE " + this.format.getPositionScale() + "\n" + vertexSource.substring(line);
+	}
+
+	/**
+	 * Packs vertices into the {@link #format}.
+	 *
+	 * @return The packed vertices, from position 0 to the limit.
+	 */
+	private ByteBuffer pack(FloatBuffer vertices, boolean layered) {
+		return this.pack(vertices, layered, 0, 0);
+	}
+
+	/**
+	 * Packs vertices into the {@link #format}, with positions relative to an origin.
+	 *
+	 * @return The packed vertices, from position 0 to the limit.
+	 */
+	private ByteBuffer pack(FloatBuffer vertices, boolean layered, float originX, float originY) {
+		return this.format.pack(vertices, this.instanced, layered, originX, originY, this.packScratch);
+	}
+
+	/**
+	 * @return Whether a batch keeps every position in the range of the {@link #format} after adding a quad.
+	 */
+	private boolean fitsPositionRange(GlyphQuadBuffer quads, float x, float y, float x2, float y2) {
+		float span = this.maxBatchSpan;
+		return Math.max(quads.getMaxX(), Math.max(x, x2)) - Math.min(quads.getMinX(), Math.min(x, x2)) <= span
+				&& Math.max(quads.getMaxY(), Math.max(y, y2)) - Math.min(quads.getMinY(), Math.min(y, y2)) <= span;
+	}
+
+	/**
+	 * Meshes are packed relative to the start of the text, so their quads can't be further from it than the range of
+	 * the {@link #format}.
+	 *
+	 * @throws IllegalArgumentException If a corner of the quad is out of the range.
+	 */
+	private void checkMeshRange(float x, float y, float x2, float y2) {
+		float range = this.format.getPositionRange();
+		if (Math.max(Math.max(Math.abs(x), Math.abs(x2)), Math.max(Math.abs(y), Math.abs(y2))) > range) {
+			throw new IllegalArgumentException("Text meshes can't go further than " + range + " units from their start with the " + this.format + " vertex format");
+		}
+	}
+
+	/**
+	 * @return How vertices are stored in the GPU.
+	 */
+	public VertexFormat getVertexFormat() {
+		return this.format;
+	}
+
+	/**
+	 * Makes new quads go to the batch of a texture, starting a batch if there isn't one.
+	 * Fonts registered in the {@link #textureArray} share a single batch.
+	 * If every batch is in use, they are drawn first.
+	 *
+	 * @param font The font of the glyphs.
+	 * @param page The texture page of the glyphs.
+	 */
+	private void selectBatch(IFont font, int page) {
+		FontTextureArray array = this.textureArray;
+		int layer = array == null ? -1 : array.getLayer(font, page);
+		if (layer != -1) {
+			this.layer = layer;
+			this.layerScaleU = array.getScaleU(layer);
+			this.layerScaleV = array.getScaleV(layer);
+		}
+
+		Batch batch = this.batch;
+		if (batch != null && batch.matches(font, page, layer)) {
+			return;
+		}
+
+		for (int i = 0; i < this.batchCount; i++) {
+			batch = this.batches[i];
+			if (batch.matches(font, page, layer)) {
+				this.batch = batch;
+				return;
+			}
+		}
+
+		if (this.batchCount == MAX_BATCHES) {
+			this.drawBatches();
+		}
+
+		batch = this.batches[this.batchCount];
+		if (batch == null) {
+			batch = new Batch(this.characterCapacity, this.instanced);
+			this.batches[this.batchCount] = batch;
+		}
+		batch.font = font;
+		batch.page = page;
+		batch.quads.clear(layer != -1);
+		this.batchCount++;
+		this.batch = batch;
+	}
+
+	/**
+	 * Draws every batch in the order they were started, then empties them and restores the renderer's objects.
+	 */
+	private void drawBatches() {
+		if (this.batchCount == 0) {
+			return;
+		}
+
+		if (this.compiling != null) {
+			for (int i = 0; i < this.batchCount; i++) {
+				Batch batch = this.batches[i];
+				GlyphQuadBuffer quads = batch.quads;
+				if (quads.getQuadCount() != 0) {
+					FloatBuffer data = BufferUtils.createFloatBuffer(quads.getLength()).put(quads.getData()).flip();
+					this.compiling.add(new CompiledPart(batch.font, batch.page, quads.isLayered(), data, quads.getQuadCount()));
+				}
+			}
+			this.clearBatches();
+			return;
+		}
+
+		// Batches aren't moved or tinted.
+		GL20.glVertexAttrib2f(TRANSLATION_ATTRIBUTE, 0, 0);
+		GL20.glVertexAttrib4f(TINT_ATTRIBUTE, 1, 1, 1, 1);
+		for (int i = 0; i < this.batchCount; i++) {
+			this.drawBatch(this.batches[i]);
+		}
+		this.clearBatches();
+
+		// Restore the renderer's objects.
+		this.renderer.useDefaultProgram();
+		this.renderer.useDefaultVao();
+		this.renderer.useDefaultVbo();
+	}
+
+	private void clearBatches() {
+		for (int i = 0; i < this.batchCount; i++) {
+			this.batches[i].clear();
+		}
+		this.batchCount = 0;
+		this.batch = null;
+	}
+
+	/**
+	 * Uploads and draws the quads of a batch.
+	 */
+	private void drawBatch(Batch batch) {
+		GlyphQuadBuffer quads = batch.quads;
+		if (quads.getQuadCount() == 0) {
+			return;
+		}
+
+		// Bind the texture and start rendering
+		this.useTexture(batch.font, batch.page, quads.isLayered() ? this.textureArray : null);
+		if (quads.isLayered()) {
+			this.arrayVbo.bind();
+			this.arrayVao.bind();
+		} else {
+			this.vbo.bind();
+			this.vao.bind();
+		}
+
+		// Compact positions are packed relative to the center of the batch, using both halves of their range, and
+		// moved back with the translation. Batches never span more than the range (see fitsPositionRange).
+		float originX = 0;
+		float originY = 0;
+		if (this.format != VertexFormat.FLOAT) {
+			originX = (float) Math.floor((quads.getMinX() + quads.getMaxX()) / 2);
+			originY = (float) Math.floor((quads.getMinY() + quads.getMaxY()) / 2);
+			GL20.glVertexAttrib2f(TRANSLATION_ATTRIBUTE, originX, originY);
+		}
+
+		PersistentRingBuffer stream = quads.isLayered() ? this.arrayStream : this.stream;
+		if (stream == null) {
+			// Grow the data store if the batch outgrew it. Otherwise, orphan it so the upload doesn't wait for the
+			// previous draws that read it.
+			if (quads.isLayered()) {
+				this.arrayVboCapacity = Math.max(this.arrayVboCapacity, quads.getLength());
+				GLUtil.arrayBufferData((long) this.arrayVboCapacity * Float.BYTES, GL15.GL_STREAM_DRAW);
+			} else {
+				this.vboCapacity = Math.max(this.vboCapacity, quads.getLength());
+				GLUtil.arrayBufferData((long) this.vboCapacity * Float.BYTES, GL15.GL_STREAM_DRAW);
+			}
+
+			// Only the appended quads are uploaded.
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, this.pack(quads.getData(), quads.isLayered(), originX, originY));
+			this.drawQuads(quads.getQuadCount(), 0);
+			return;
+		}
+
+		// Copy the quads into the segment of the frame.
+		ByteBuffer data = this.pack(quads.getData(), quads.isLayered(), originX, originY);
+		int alignment = this.format.getStride(this.instanced, quads.isLayered());
+		int offset = stream.write(data, alignment);
+		if (offset == -1 && !this.framed) {
+			// Without frame boundaries, move on to the next segment, which may wait for draws of this frame.
+			stream.nextFrame();
+			offset = stream.write(data, alignment);
+		}
+		if (offset == -1) {
+			// The frame outgrew the segments. Double them, so growing only happens a few times.
+			int needed = (stream.getFrameUsage() + data.remaining() + alignment) / this.getQuadBytes(quads.isLayered()) + 1;
+			this.frameCapacity = Math.max(this.frameCapacity * 2, needed);
+			stream = this.replaceStream(quads.isLayered());
+			offset = stream.write(data, alignment);
+		}
+		this.drawQuads(quads.getQuadCount(), offset / alignment);
+	}
+
+	/**
+	 * Binds the texture of a batch and the program that draws it, and uploads the uniforms.
+	 *
+	 * @param textureArray The array, if the quads sample it instead of the texture of the font.
+	 */
+	private void useTexture(IFont font, int page, @Nullable FontTextureArray textureArray) {
+		if (textureArray != null) {
+			// Glyphs rasterized by dynamic fonts since the last draw are only in their own textures.
+			textureArray.sync();
+			GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, textureArray.getId());
+			this.renderer.useProgram(textureArray.isSDF() ? this.getArraySDFProgram() : this.arrayProgram);
+		} else {
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, font.getTexture(page).getId());
+			this.renderer.useProgram(font.isSDF() ? this.getSDFProgram() : this.program);
+		}
+
+		// Upload uniforms to the shader.
+		try {
+			this.renderer.uploadColor();
+			this.renderer.uploadProjectionAndView();
+		} catch (UniformNotFoundException ignored) {
+		}
+	}
+
+	/**
+	 * Draws quads from the bound vertex array object.
+	 *
+	 * @param count The amount of quads.
+	 * @param base  The first vertex, or the first instance if the renderer is instanced.
+	 */
+	private void drawQuads(int count, int base) {
+		if (this.instanced) {
+			// Every record is expanded into the four corners of a triangle strip.
+			GL42.glDrawArraysInstancedBaseInstance(GL11.GL_TRIANGLE_STRIP, 0, GlyphQuadBuffer.VERTICES_PER_QUAD, count, base);
+			return;
+		}
+
+		if (this.eboQuads < count) {
+			// The bound vao has the ebo bound.
+			this.eboQuads = Math.max(count, this.eboQuads * 2);
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, GlyphQuadBuffer.createIndices(this.eboQuads), GL15.GL_STATIC_DRAW);
+		}
+
+		// Draw all the quads, two triangles each.
+		GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES, count * GlyphQuadBuffer.INDICES_PER_QUAD, GL11.GL_UNSIGNED_INT, 0L, base);
+	}
+
+	private GLProgram getSDFProgram() {
+		if (this.sdfProgram == null) {
+			this.sdfProgram = new GLProgram();
+			this.sdfProgram.delete();
+			this.sdfProgram.init(this.withDefines(this.getVertexSource()), this.getSDFFragmentSource());
+		}
+		return this.sdfProgram;
+	}
+
+	private GLProgram getArraySDFProgram() {
+		if (this.arraySdfProgram == null) {
+			this.arraySdfProgram = new GLProgram();
+			this.arraySdfProgram.delete();
+			this.arraySdfProgram.init(this.withDefines(this.getArrayVertexSource()), this.getArrayFragmentSource(true));
+		}
+		return this.arraySdfProgram;
+	}
+
+	@Override
+	public void setScaleX(float scaleX) {
+		this.scaleX = scaleX;
+	}
+
+	@Override
+	public void setScaleY(float scaleY) {
+		this.scaleY = scaleY;
+	}
+
+	@Override
+	public boolean isKerningEnabled() {
+		return this.kerning;
+	}
+
+	/**
+	 * Enables or disables the kerning of the rendered strings. Disabling it skips every kerning lookup.
+	 *
+	 * @param kerning True to apply the kerning of the fonts.
+	 */
+	public void setKerningEnabled(boolean kerning) {
+		this.kerning = kerning;
+	}
+
+	@Override
+	public float getScaleX() {
+		return this.scaleX;
+	}
+
+	@Override
+	public float getScaleY() {
+		return this.scaleY;
+	}
+
+	@Override
+	public void drawChar(IFont font, @NotNull CharacterData data, float _x, float _y) {
+		GlyphStore store = font.getGlyphStore();
+		selectBatch(font, store != null && data.slot != -1 ? Math.max(font.getGlyphPage(data.slot), 0) : 0);
+		if (store != null && data.slot != -1) {
+			int variants = font.getSubpixelVariants();
+			if (variants > 1) {
+				drawGlyph(store.getData(), (data.slot + IFontRenderer.getSubpixelVariant(_x, variants)) * GlyphStore.STRIDE, IFontRenderer.getSubpixelPen(_x, variants), _y);
+			} else {
+				drawGlyph(store.getData(), data.slot * GlyphStore.STRIDE, _x, _y);
+			}
+			return;
+		}
+
+		float x = _x + data.renderOriginX * this.getScaleX();
+		float y = _y + data.renderOriginY * this.getScaleY();
+		float x2 = x + data.renderWidth * this.getScaleX();
+		float y2 = y + data.renderHeight * this.getScaleY();
+
+		putQuad(x, y, x2, y2, (float) data.u(), (float) data.v(), (float) data.u2(), (float) data.v2());
+	}
+
+	/**
+	 * Appends the quad of a glyph from a {@link GlyphStore}.
+	 *
+	 * @param glyphs The data of the store.
+	 * @param offset The offset of the glyph in {@code glyphs}.
+	 * @param _x     The X position of the pen.
+	 * @param _y     The Y position of the pen.
+	 */
+	protected void drawGlyph(float[] glyphs, int offset, float _x, float _y) {
+		float x = _x + glyphs[offset + GlyphStore.OFFSET_X] * this.scaleX;
+		float y = _y + glyphs[offset + GlyphStore.OFFSET_Y] * this.scaleY;
+		float x2 = x + glyphs[offset + GlyphStore.WIDTH] * this.scaleX;
+		float y2 = y + glyphs[offset + GlyphStore.HEIGHT] * this.scaleY;
+
+		putQuad(x, y, x2, y2, glyphs[offset + GlyphStore.U], glyphs[offset + GlyphStore.V], glyphs[offset + GlyphStore.U2], glyphs[offset + GlyphStore.V2]);
+	}
+
+	/**
+	 * Appends a quad into the batch, with the current color and the current layer if the batch samples the
+	 * {@link #textureArray}.
+	 */
+	private void putQuad(float x, float y, float x2, float y2, float u, float v, float u2, float v2) {
+		if (this.compiling != null) {
+			this.checkMeshRange(x, y, x2, y2);
+		}
+
+		Batch batch = this.batch;
+		if (!batch.quads.ensureRemaining(1, this.maxCharacterCapacity)
+				|| this.compiling == null && batch.quads.getQuadCount() != 0 && !this.fitsPositionRange(batch.quads, x, y, x2, y2)) {
+			// The batch can't grow anymore, or its positions wouldn't fit the format. Draw everything and continue in
+			// an empty batch.
+			batch = this.restartBatch(batch);
+		}
+		if (batch.quads.isLayered()) {
+			u *= this.layerScaleU;
+			v *= this.layerScaleV;
+			u2 *= this.layerScaleU;
+			v2 *= this.layerScaleV;
+		}
+
+		batch.quads.put(x, y, x2, y2, u, v, u2, v2, this.red, this.green, this.blue, this.alpha, this.layer);
+		if (this.compiling != null) {
+			this.compiledMinX = Math.min(this.compiledMinX, Math.min(x, x2));
+			this.compiledMinY = Math.min(this.compiledMinY, Math.min(y, y2));
+			this.compiledMaxX = Math.max(this.compiledMaxX, Math.max(x, x2));
+			this.compiledMaxY = Math.max(this.compiledMaxY, Math.max(y, y2));
+		}
+	}
+
+	/**
+	 * Draws every batch, then selects an empty batch for the same texture as {@code batch}.
+	 *
+	 * @return The selected batch.
+	 */
+	private Batch restartBatch(Batch batch) {
+		IFont font = batch.font;
+		int page = batch.page;
+		// Selecting the batch of a font in the texture array changes the layer, which belongs to the current glyph.
+		int layer = this.layer;
+		float layerScaleU = this.layerScaleU;
+		float layerScaleV = this.layerScaleV;
+
+		this.drawBatches();
+		this.selectBatch(font, page);
+
+		this.layer = layer;
+		this.layerScaleU = layerScaleU;
+		this.layerScaleV = layerScaleV;
+		return this.batch;
+	}
+
+	@Override
+	public void drawInvalidChar(IFont font, int codepoint, float x, float y) {
+
+	}
+
+	@Override
+	public void delete() {
+		this.program.delete();
+		this.vbo.delete();
+		this.vao.delete();
+		if (this.ebo != 0) {
+			GL15.glDeleteBuffers(this.ebo);
+		}
+		if (this.stream != null) {
+			this.stream.delete();
+		}
+		if (this.arrayStream != null) {
+			this.arrayStream.delete();
+		}
+		if (this.sdfProgram != null) {
+			this.sdfProgram.delete();
+		}
+		if (this.arrayProgram != null) {
+			this.arrayProgram.delete();
+			this.arrayVbo.delete();
+			this.arrayVao.delete();
+		}
+		if (this.arraySdfProgram != null) {
+			this.arraySdfProgram.delete();
+		}
+	}
+
+	public int getCharacterCapacity() {
+		return characterCapacity;
+	}
+
+	public int getMaxCharacterCapacity() {
+		return this.maxCharacterCapacity;
+	}
+
+	/**
+	 * Sets the amount of characters a batch can grow to. Strings with more characters (or more characters of the
+	 * same texture while batching) are drawn in several parts.
+	 *
+	 * @param maxCharacterCapacity The maximum amount of characters. It's never lower than the initial capacity.
+	 */
+	public void setMaxCharacterCapacity(int maxCharacterCapacity) {
+		this.maxCharacterCapacity = Math.max(maxCharacterCapacity, this.characterCapacity);
+	}
+
+	/**
+	 * The vertex shader. {@code POSITION_SCALE} is defined before compiling it, and positions must be multiplied by it
+	 * (see {@link VertexFormat#getPositionScale()}).
+	 */
+	protected String getVertexSource() {
+		return """
+				#version 430
+
+				layout (location = 0) in vec2 position;
+				layout (location = 1) in vec2 coords;
+				layout (location = 2) in vec4 vertexColor;
+
+				layout (location = 4) in vec2 translation;
+				layout (location = 5) in vec4 tint;
+
+				uniform mat4 projection;
+				uniform mat4 view;
+
+				out vec2 fragCoords;
+				out vec4 fragColor;
+
+				void main() {
+					gl_Position = projection * view * vec4(position * POSITION_SCALE + translation, 0.0, 1.0);
+					fragCoords = coords;
+					fragColor = vertexColor * tint;
+				}""";
+	}
+
+	protected String getFragmentSource() {
+		return """
+				#version 430
+
+				uniform sampler2D t;
+
+				uniform vec4 shapeColor;
+				in vec2 fragCoords;
+				in vec4 fragColor;
+				out vec4 color;
+
+				void main() {
+					color = texture2D(t, fragCoords) * fragColor * shapeColor;
+				}""";
+	}
+
+	/**
+	 * The fragment shader used with fonts that hold signed distance fields.
+	 * The edge is antialiased using the screen-space derivative of the distance, so it stays sharp at any scale.
+	 */
+	protected String getSDFFragmentSource() {
+		return """
+				#version 430
+
+				uniform sampler2D t;
+
+				uniform vec4 shapeColor;
+				in vec2 fragCoords;
+				in vec4 fragColor;
+				out vec4 color;
+
+				const float edge = 128.0 / 255.0;
+
+				void main() {
+					float distance = texture(t, fragCoords).a;
+					float width = max(fwidth(distance), 1.0 / 255.0);
+					float alpha = smoothstep(edge - width, edge + width, distance);
+					vec4 tint = fragColor * shapeColor;
+					color = vec4(tint.rgb, tint.a * alpha);
+				}""";
+	}
+
+	protected String getArrayVertexSource() {
+		return """
+				#version 430
+
+				layout (location = 0) in vec2 position;
+				layout (location = 1) in vec2 coords;
+				layout (location = 2) in vec4 vertexColor;
+				layout (location = 3) in float layer;
+
+				layout (location = 4) in vec2 translation;
+				layout (location = 5) in vec4 tint;
+
+				uniform mat4 projection;
+				uniform mat4 view;
+
+				out vec3 fragCoords;
+				out vec4 fragColor;
+
+				void main() {
+					gl_Position = projection * view * vec4(position * POSITION_SCALE + translation, 0.0, 1.0);
+					fragCoords = vec3(coords, layer);
+					fragColor = vertexColor * tint;
+				}""";
+	}
+
+	/**
+	 * The fragment shader used with the {@link #textureArray}.
+	 *
+	 * @param sdf Whether the array holds signed distance fields. See {@link #getSDFFragmentSource()}.
+	 */
+	protected String getArrayFragmentSource(boolean sdf) {
+		if (sdf) {
+			return """
+					#version 430
+
+					uniform sampler2DArray t;
+
+					uniform vec4 shapeColor;
+					in vec3 fragCoords;
+					in vec4 fragColor;
+					out vec4 color;
+
+					const float edge = 128.0 / 255.0;
+
+					void main() {
+						float distance = texture(t, fragCoords).a;
+						float width = max(fwidth(distance), 1.0 / 255.0);
+						float alpha = smoothstep(edge - width, edge + width, distance);
+						vec4 tint = fragColor * shapeColor;
+						color = vec4(tint.rgb, tint.a * alpha);
+					}""";
+		}
+
+		return """
+				#version 430
+
+				uniform sampler2DArray t;
+
+				uniform vec4 shapeColor;
+				in vec3 fragCoords;
+				in vec4 fragColor;
+				out vec4 color;
+
+				void main() {
+					color = texture(t, fragCoords) * fragColor * shapeColor;
+				}""";
+	}
+
+	/**
+	 * The quads of the glyphs that use the same texture, or the same {@link #textureArray}.
+	 */
+	private static class Batch {
+		/**
+		 * Contains the quads that are going to be rendered. Layered quads sample the {@link #textureArray}.
+		 */
+		private final GlyphQuadBuffer quads;
+		private IFont font;
+		private int page;
+
+		private Batch(int characterCapacity, boolean instanced) {
+			this.quads = new GlyphQuadBuffer(characterCapacity, instanced);
+		}
+
+		/**
+		 * @param layer The layer of the glyphs in the {@link #textureArray}, or {@code -1} if they use their own texture.
+		 * @return Whether glyphs go into this batch.
+		 */
+		private boolean matches(IFont font, int page, int layer) {
+			if (layer != -1) {
+				return this.quads.isLayered();
+			}
+			return !this.quads.isLayered() && this.font == font && this.page == page;
+		}
+
+		private void clear() {
+			this.quads.clear(false);
+			this.font = null;
+		}
+	}
+
+	/**
+	 * The quads of a batch, kept while compiling a {@link TextMesh}.
+	 */
+	private record CompiledPart(IFont font, int page, boolean layered, FloatBuffer data, int quads) {
 	}
 }
@@ -18,6 +18,7 @@
 
 package dev.seeight.common.lwjgl.fontrenderer;
 
+import dev.seeight.common.lwjgl.font.GlyphStore;
 import dev.seeight.common.lwjgl.font.json.CharacterData;
 import dev.seeight.common.lwjgl.font.IFont;
 import dev.seeight.renderer.renderer.Renderer;
@@ -33,6 +34,7 @@ public class FontRenderer implements IFontRenderer {
 
 	private float scaleX;
 	private float scaleY;
+	private boolean kerning = true;
 
 	public FontRenderer(Renderer renderer) {
 		this.renderer = renderer;
@@ -43,6 +45,25 @@ public class FontRenderer implements IFontRenderer {
 
 	@Override
 	public void drawChar(IFont font, CharacterData data, float x, float y) {
+		GlyphStore store = font.getGlyphStore();
+		if (store != null && data.slot != -1) {
+			float[] glyphs = store.getData();
+			int o = data.slot * GlyphStore.STRIDE;
+			// Use the variant rasterized closest to the pen position, drawn at a whole pixel.
+			int variants = font.getSubpixelVariants();
+			if (variants > 1) {
+				o += IFontRenderer.getSubpixelVariant(x, variants) * GlyphStore.STRIDE;
+				x = IFontRenderer.getSubpixelPen(x, variants);
+			}
+			float x1 = x + glyphs[o + GlyphStore.OFFSET_X] * this.scaleX;
+			float y1 = y + glyphs[o + GlyphStore.OFFSET_Y] * this.scaleY;
+			float x2 = x1 + glyphs[o + GlyphStore.WIDTH] * this.scaleX;
+			float y2 = y1 + glyphs[o + GlyphStore.HEIGHT] * this.scaleY;
+			int page = font.getGlyphPage(data.slot);
+			renderer.texRect2f(font.getTexture(Math.max(page, 0)), x1, y1, x2, y2, glyphs[o + GlyphStore.U], glyphs[o + GlyphStore.V], glyphs[o + GlyphStore.U2], glyphs[o + GlyphStore.V2]);
+			return;
+		}
+
 		float x1 = x + data.renderOriginX * this.scaleX;
 		float y1 = y + data.renderOriginY * this.scaleY;
 		float x2 = x1 + data.renderWidth * this.scaleX;
@@ -55,6 +76,20 @@ public class FontRenderer implements IFontRenderer {
 
 	}
 
+	@Override
+	public boolean isKerningEnabled() {
+		return kerning;
+	}
+
+	/**
+	 * Enables or disables the kerning of the rendered strings. Disabling it skips every kerning lookup.
+	 *
+	 * @param kerning True to apply the kerning of the fonts.
+	 */
+	public void setKerningEnabled(boolean kerning) {
+		this.kerning = kerning;
+	}
+
 	@Override
 	public float getScaleX() {
 		return scaleX;
@@ -0,0 +1,297 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Builds the vertices of glyph quads, four per quad, to be drawn with the indices of {@link #createIndices(int)}.
+ * It doesn't use OpenGL, so the output can be checked without a context.<p>
+ * Every vertex has the position, the texture coordinates and the color, and also the layer in layered buffers
+ * (see {@link dev.seeight.common.lwjgl.font.FontTextureArray FontTextureArray}).<p>
+ * Instanced buffers write a single record per quad instead: the position and size, the texture rectangle, the color,
+ * and the layer in layered buffers. The corners are expanded by the vertex shader (see {@link InstancedFontRenderer}).
+ *
+ * @author C8FF
+ */
+public class GlyphQuadBuffer {
+	/**
+	 * Floats per vertex: position, texture coordinates and color.
+	 */
+	public static final int STRIDE = 2 + 2 + 4;
+	/**
+	 * Floats per vertex of layered buffers, which also have the layer.
+	 */
+	public static final int LAYERED_STRIDE = STRIDE + 1;
+	/**
+	 * Floats per quad of instanced buffers: position and size, texture rectangle and color.
+	 */
+	public static final int INSTANCE_STRIDE = 4 + 4 + 4;
+	/**
+	 * Floats per quad of layered instanced buffers, which also have the layer.
+	 */
+	public static final int LAYERED_INSTANCE_STRIDE = INSTANCE_STRIDE + 1;
+	public static final int VERTICES_PER_QUAD = 4;
+	public static final int INDICES_PER_QUAD = 6;
+
+	private FloatBuffer buffer;
+	/**
+	 * The count of how many floats have been appended to the {@link #buffer}.
+	 */
+	private int length;
+	private int quads;
+	private boolean layered;
+	// The bounds of the positions of every quad.
+	private float minX = Float.POSITIVE_INFINITY;
+	private float minY = Float.POSITIVE_INFINITY;
+	private float maxX = Float.NEGATIVE_INFINITY;
+	private float maxY = Float.NEGATIVE_INFINITY;
+	/**
+	 * Whether quads are written as one instance record instead of four vertices.
+	 */
+	private final boolean instanced;
+
+	/**
+	 * @param quadCapacity The amount of quads the buffer holds before growing.
+	 */
+	public GlyphQuadBuffer(int quadCapacity) {
+		this(quadCapacity, false);
+	}
+
+	/**
+	 * @param quadCapacity The amount of quads the buffer holds before growing.
+	 * @param instanced    Whether every quad is a single instance record instead of four vertices.
+	 */
+	public GlyphQuadBuffer(int quadCapacity, boolean instanced) {
+		this.instanced = instanced;
+		this.buffer = BufferUtils.createFloatBuffer(getCapacity(quadCapacity, instanced));
+	}
+
+	/**
+	 * @return The amount of floats needed for {@code quads} quads of any kind.
+	 */
+	public static int getCapacity(int quads) {
+		return getCapacity(quads, false);
+	}
+
+	/**
+	 * @param instanced Whether the quads are instance records.
+	 * @return The amount of floats needed for {@code quads} quads, layered or not.
+	 */
+	public static int getCapacity(int quads, boolean instanced) {
+		return quads * (instanced ? LAYERED_INSTANCE_STRIDE : VERTICES_PER_QUAD * LAYERED_STRIDE);
+	}
+
+	/**
+	 * Creates the indices of {@code quads} quads: two triangles per quad, wound the same way (clockwise with Y pointing
+	 * down, like the positions of the renderers), sharing the first and third vertex.
+	 */
+	public static @NotNull IntBuffer createIndices(int quads) {
+		IntBuffer indices = BufferUtils.createIntBuffer(quads * INDICES_PER_QUAD);
+		for (int i = 0; i < quads; i++) {
+			int vertex = i * VERTICES_PER_QUAD;
+			indices.put(vertex).put(vertex + 1).put(vertex + 2);
+			indices.put(vertex + 2).put(vertex + 3).put(vertex);
+		}
+		indices.flip();
+		return indices;
+	}
+
+	/**
+	 * Makes sure there's space for more quads. The capacity is doubled every time it grows, so long strings only
+	 * reallocate a few times.
+	 *
+	 * @param quads    The amount of quads to be appended.
+	 * @param maxQuads The amount of quads the buffer can't grow beyond.
+	 * @return False if there isn't enough space and the buffer can't grow.
+	 */
+	public boolean ensureRemaining(int quads, int maxQuads) {
+		int floats = quads * this.getFloatsPerQuad();
+		if (this.buffer.remaining() >= floats) {
+			return true;
+		}
+
+		int capacity = Math.min(Math.max(this.buffer.capacity() * 2, this.length + floats), getCapacity(maxQuads, this.instanced));
+		if (capacity < this.length + floats) {
+			return false;
+		}
+
+		FloatBuffer grown = BufferUtils.createFloatBuffer(capacity);
+		this.buffer.flip();
+		grown.put(this.buffer);
+		this.buffer = grown;
+		return true;
+	}
+
+	/**
+	 * Appends a quad. There must be space for it (see {@link #ensureRemaining(int, int)}).
+	 *
+	 * @param layer The layer of the texture array. Ignored if the buffer isn't layered.
+	 */
+	public void put(float x, float y, float x2, float y2, float u, float v, float u2, float v2, float red, float green, float blue, float alpha, float layer) {
+		this.minX = Math.min(this.minX, Math.min(x, x2));
+		this.minY = Math.min(this.minY, Math.min(y, y2));
+		this.maxX = Math.max(this.maxX, Math.max(x, x2));
+		this.maxY = Math.max(this.maxY, Math.max(y, y2));
+
+		if (this.instanced) {
+			FloatBuffer buffer = this.buffer;
+			buffer.put(x).put(y).put(x2 - x).put(y2 - y);
+			buffer.put(u).put(v).put(u2).put(v2);
+			buffer.put(red).put(green).put(blue).put(alpha);
+			if (this.layered) {
+				buffer.put(layer);
+			}
+			this.length += this.getStride();
+			this.quads++;
+			return;
+		}
+
+		// x, y                 x2, y
+		// 0--------------------1
+		// |                    |
+		// |                    |
+		// 3--------------------2
+		// x, y2                x2, y2
+		this.putVertex(x, y, u, v, red, green, blue, alpha, layer);
+		this.putVertex(x2, y, u2, v, red, green, blue, alpha, layer);
+		this.putVertex(x2, y2, u2, v2, red, green, blue, alpha, layer);
+		this.putVertex(x, y2, u, v2, red, green, blue, alpha, layer);
+		this.quads++;
+	}
+
+	private void putVertex(float x, float y, float u, float v, float red, float green, float blue, float alpha, float layer) {
+		FloatBuffer buffer = this.buffer;
+		buffer.put(x).put(y).put(u).put(v);
+		buffer.put(red).put(green).put(blue).put(alpha);
+		if (this.layered) {
+			buffer.put(layer);
+			this.length += LAYERED_STRIDE;
+		} else {
+			this.length += STRIDE;
+		}
+	}
+
+	/**
+	 * @return A view of the appended floats, from position 0 to {@link #getLength()}.
+	 */
+	public @NotNull FloatBuffer getData() {
+		return this.buffer.duplicate().flip();
+	}
+
+	/**
+	 * @return The amount of floats appended.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * @return The amount of floats the buffer holds without growing.
+	 */
+	public int getCapacity() {
+		return this.buffer.capacity();
+	}
+
+	public int getQuadCount() {
+		return this.quads;
+	}
+
+	/**
+	 * @return The left edge of the quads, or positive infinity if there aren't any.
+	 */
+	public float getMinX() {
+		return this.minX;
+	}
+
+	/**
+	 * @return The top edge of the quads, or positive infinity if there aren't any.
+	 */
+	public float getMinY() {
+		return this.minY;
+	}
+
+	/**
+	 * @return The right edge of the quads, or negative infinity if there aren't any.
+	 */
+	public float getMaxX() {
+		return this.maxX;
+	}
+
+	/**
+	 * @return The bottom edge of the quads, or negative infinity if there aren't any.
+	 */
+	public float getMaxY() {
+		return this.maxY;
+	}
+
+	/**
+	 * @return The amount of indices needed to draw every quad. Instanced buffers don't use indices.
+	 */
+	public int getIndexCount() {
+		return this.quads * INDICES_PER_QUAD;
+	}
+
+	public boolean isLayered() {
+		return this.layered;
+	}
+
+	public boolean isInstanced() {
+		return this.instanced;
+	}
+
+	/**
+	 * @return The amount of floats per vertex, or per quad in instanced buffers.
+	 */
+	public int getStride() {
+		return getStride(this.instanced, this.layered);
+	}
+
+	/**
+	 * @return The amount of floats per vertex, or per quad in instanced buffers.
+	 */
+	public static int getStride(boolean instanced, boolean layered) {
+		if (instanced) {
+			return layered ? LAYERED_INSTANCE_STRIDE : INSTANCE_STRIDE;
+		}
+		return layered ? LAYERED_STRIDE : STRIDE;
+	}
+
+	private int getFloatsPerQuad() {
+		return this.instanced ? this.getStride() : VERTICES_PER_QUAD * this.getStride();
+	}
+
+	/**
+	 * Removes every quad and sets whether the next ones have a layer.
+	 */
+	public void clear(boolean layered) {
+		this.buffer.clear();
+		this.length = 0;
+		this.quads = 0;
+		this.layered = layered;
+		this.minX = Float.POSITIVE_INFINITY;
+		this.minY = Float.POSITIVE_INFINITY;
+		this.maxX = Float.NEGATIVE_INFINITY;
+		this.maxY = Float.NEGATIVE_INFINITY;
+	}
+}
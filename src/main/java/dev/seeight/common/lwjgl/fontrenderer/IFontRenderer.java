@@ -20,6 +20,8 @@ package dev.seeight.common.lwjgl.fontrenderer;
 
 import dev.seeight.common.lwjgl.font.json.CharacterData;
 import dev.seeight.common.lwjgl.font.IFont;
+import dev.seeight.common.lwjgl.font.KerningTable;
+import dev.seeight.common.lwjgl.font.shaping.ShapedRun;
 
 public interface IFontRenderer {
 	static void assertIndices(int max, int start, int end) throws IndexOutOfBoundsException {
@@ -28,6 +30,27 @@ public interface IFontRenderer {
 		if (end > max) throw new IndexOutOfBoundsException(String.format("end %s > max %s", end, max));
 	}
 
+	/**
+	 * Picks the subpixel variant of a glyph that is closest to a pen position.
+	 *
+	 * @param x        The X position of the pen.
+	 * @param variants The amount of variants, from {@link IFont#getSubpixelVariants()}.
+	 * @return The variant, to be added to the slot of the glyph.
+	 * @see #getSubpixelPen(float, int)
+	 */
+	static int getSubpixelVariant(float x, int variants) {
+		return Math.floorMod((int) Math.floor(x * variants + 0.5F), variants);
+	}
+
+	/**
+	 * @param x        The X position of the pen.
+	 * @param variants The amount of variants, from {@link IFont#getSubpixelVariants()}.
+	 * @return The whole pixel to draw the variant from {@link #getSubpixelVariant(float, int)} at.
+	 */
+	static float getSubpixelPen(float x, int variants) {
+		return (float) Math.floor(Math.floor(x * variants + 0.5F) / variants);
+	}
+
 	/**
 	 * Renders a string using the specified font.
 	 *
@@ -184,6 +207,7 @@ public interface IFontRenderer {
 		IFontRenderer.assertIndices(characters.length, start, end);
 
 		float maxX = x;
+		int previous = -1;
 		for (int i = start; i < end; i++) {
 			int codePoint = characters[i];
 			if (isNewLine(codePoint)) {
@@ -192,17 +216,23 @@ public interface IFontRenderer {
 				}
 				x = startX;
 				y += getNewLineHeight(font);
+				previous = -1;
 				continue;
 			}
 
-			CharacterData data = font.getCharacterData(codePoint);
+			x += getKerning(font, previous, codePoint);
+			previous = codePoint;
+
+			// Fonts made of other fonts tell which one has the glyph.
+			IFont glyphFont = font.getGlyphFont(codePoint);
+			CharacterData data = glyphFont.getCharacterData(codePoint);
 			if (data != null) {
-				drawChar(font, data, x, y);
+				drawChar(glyphFont, data, x, y);
 			} else {
 				drawInvalidChar(font, codePoint, x, y);
 			}
 
-			x += getCharacterWidth(font, data, codePoint);
+			x += getCharacterWidth(glyphFont, data, codePoint);
 		}
 		if (maxX < x) {
 			maxX = x;
@@ -211,6 +241,38 @@ public interface IFontRenderer {
 		return maxX;
 	}
 
+	/**
+	 * Renders text that was already shaped, like the runs of a {@link dev.seeight.common.lwjgl.font.shaping.ShapedRunCache ShapedRunCache}.
+	 * The glyphs are drawn at the positions of the run, so nothing is measured or looked up again. They are found by
+	 * their glyph index (see {@link IFont#getCharacterDataByIndex(int)}), and drawn with {@link #drawChar}, which picks
+	 * the subpixel variants the same way {@link #drawString(IFont, char[], float, float, float, int, int)} does.
+	 *
+	 * @param run The shaped text.
+	 * @param x   The X position where the text will be rendered.
+	 * @param y   The Y position where the text will be rendered.
+	 * @return The end of the widest line in the X axis.
+	 */
+	default float drawShaped(ShapedRun run, float x, float y) {
+		float scaleX = this.getScaleX();
+		float scaleY = this.getScaleY();
+		for (int i = 0; i < run.size(); i++) {
+			IFont glyphFont = run.getGlyphFont(i);
+			int glyph = run.getGlyph(i);
+			float glyphX = x + run.getX(i) * scaleX;
+			float glyphY = y + run.getY(i) * scaleY;
+
+			CharacterData data = glyphFont.getCharacterDataByIndex(glyph);
+			if (data != null) {
+				drawChar(glyphFont, data, glyphX, glyphY);
+			} else {
+				// The codepoint isn't known after shaping.
+				drawInvalidChar(run.getFont(), -1, glyphX, glyphY);
+			}
+		}
+
+		return x + run.getWidth() * scaleX;
+	}
+
 	/**
 	 * Calculates the width of the {@code characters} using the properties of the specified font.
 	 *
@@ -229,15 +291,19 @@ public interface IFontRenderer {
 
 		float width = 0;
 		float maxWidth = 0;
+		int previous = -1;
 		for (int i = start; i < end; i++) {
 			int codePoint = characters[i];
 
 			if (isNewLine(codePoint)) {
 				width = 0;
+				previous = -1;
 				continue;
 			}
 
+			width += this.getKerning(font, previous, codePoint);
 			width += this.getCharacterWidth(font, font.getCharacterData(codePoint), codePoint);
+			previous = codePoint;
 
 			if (maxWidth < width) {
 				maxWidth = width;
@@ -290,7 +356,7 @@ public interface IFontRenderer {
 	 * Not recommended to use separately from {@link #drawString(IFont, char[], float, float, float, int, int)}
 	 *
 	 * @param font      The font to be used.
-	 * @param codepoint The codepoint of the character.
+	 * @param codepoint The codepoint of the character, or {@code -1} for the missing glyphs of a {@link ShapedRun}.
 	 * @param x         The X axis position to render the character to.
 	 * @param y         The Y axis position to render the character to.
 	 */
@@ -329,6 +395,37 @@ public interface IFontRenderer {
 		return 0;
 	}
 
+	/**
+	 * Calculates the kerning between two characters. It also applies the scale X.
+	 *
+	 * @param font      The font to be used.
+	 * @param previous  The codepoint of the previous character, or {@code -1} at the start of a line.
+	 * @param codepoint The codepoint of the character after it.
+	 * @return The distance to move the character after {@code previous}. Zero if kerning is disabled.
+	 */
+	default float getKerning(IFont font, int previous, int codepoint) {
+		if (previous == -1 || !this.isKerningEnabled()) {
+			return 0;
+		}
+
+		// There isn't any kerning between glyphs of different fonts.
+		IFont glyphFont = font.getGlyphFont(codepoint);
+		if (glyphFont != font.getGlyphFont(previous)) {
+			return 0;
+		}
+
+		KerningTable kerning = glyphFont.getKerningTable();
+		return kerning == null ? 0 : kerning.get(previous, codepoint) * this.getScaleX();
+	}
+
+	/**
+	 * @return True if the kerning of the fonts is applied to the rendered strings. Renderers that let it be disabled
+	 * (like {@link FontRenderer#setKerningEnabled(boolean)}) report their current state.
+	 */
+	default boolean isKerningEnabled() {
+		return true;
+	}
+
 	/**
 	 * @return The horizontal scale of the rendered strings.
 	 */
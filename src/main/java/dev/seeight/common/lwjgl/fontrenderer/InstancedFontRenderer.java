@@ -0,0 +1,119 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import dev.seeight.renderer.renderer.gl.OpenGLRenderer2;
+
+/**
+ * A {@link BufferedFontRenderer} that uploads a single record per glyph, with its position and size, texture rectangle
+ * and color, instead of four vertices. The vertex shader expands every record into a quad with instancing, so a glyph
+ * takes 12 floats instead of 32.<p>
+ * Batching, colors and texture arrays work the same way.
+ *
+ * @author C8FF
+ */
+public class InstancedFontRenderer extends BufferedFontRenderer {
+	/**
+	 * Constructs a font renderer.
+	 *
+	 * @param renderer An OpenGLRenderer2 instance. This is not used to render
+	 *                 the characters, but to restore the {@code program}, {@code vbo}, and {@code vao}.
+	 */
+	public InstancedFontRenderer(OpenGLRenderer2 renderer) {
+		this(renderer, 256);
+	}
+
+	/**
+	 * Constructs a font renderer.
+	 *
+	 * @param renderer          An OpenGLRenderer2 instance. This is not used to render
+	 *                          the characters, but to restore the {@code program}, {@code vbo}, and {@code vao}.
+	 * @param characterCapacity The initial character capacity of the buffer.
+	 */
+	public InstancedFontRenderer(OpenGLRenderer2 renderer, int characterCapacity) {
+		this(renderer, characterCapacity, VertexFormat.FLOAT);
+	}
+
+	/**
+	 * Constructs a font renderer.
+	 *
+	 * @param format How records are stored in the GPU. Compact formats take 20 bytes per glyph instead of 48, and
+	 *               {@link VertexFormat#SHORT} is the recommended one.
+	 * @see #InstancedFontRenderer(OpenGLRenderer2, int)
+	 */
+	public InstancedFontRenderer(OpenGLRenderer2 renderer, int characterCapacity, VertexFormat format) {
+		super(renderer, characterCapacity, true, format);
+	}
+
+	/**
+	 * The corners of the quad come from {@code gl_VertexID}, in triangle strip order.
+	 */
+	@Override
+	protected String getVertexSource() {
+		return """
+				#version 430
+
+				layout (location = 0) in vec4 rect;
+				layout (location = 1) in vec4 uvs;
+				layout (location = 2) in vec4 vertexColor;
+
+				layout (location = 4) in vec2 translation;
+				layout (location = 5) in vec4 tint;
+
+				uniform mat4 projection;
+				uniform mat4 view;
+
+				out vec2 fragCoords;
+				out vec4 fragColor;
+
+				void main() {
+					vec2 corner = vec2(gl_VertexID & 1, gl_VertexID >> 1);
+					gl_Position = projection * view * vec4((rect.xy + rect.zw * corner) * POSITION_SCALE + translation, 0.0, 1.0);
+					fragCoords = mix(uvs.xy, uvs.zw, corner);
+					fragColor = vertexColor * tint;
+				}""";
+	}
+
+	@Override
+	protected String getArrayVertexSource() {
+		return """
+				#version 430
+
+				layout (location = 0) in vec4 rect;
+				layout (location = 1) in vec4 uvs;
+				layout (location = 2) in vec4 vertexColor;
+				layout (location = 3) in float layer;
+
+				layout (location = 4) in vec2 translation;
+				layout (location = 5) in vec4 tint;
+
+				uniform mat4 projection;
+				uniform mat4 view;
+
+				out vec3 fragCoords;
+				out vec4 fragColor;
+
+				void main() {
+					vec2 corner = vec2(gl_VertexID & 1, gl_VertexID >> 1);
+					gl_Position = projection * view * vec4((rect.xy + rect.zw * corner) * POSITION_SCALE + translation, 0.0, 1.0);
+					fragCoords = vec3(mix(uvs.xy, uvs.zw, corner), layer);
+					fragColor = vertexColor * tint;
+				}""";
+	}
+}
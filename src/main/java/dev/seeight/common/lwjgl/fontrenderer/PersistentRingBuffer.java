@@ -0,0 +1,184 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Streams vertex data through an array buffer that stays mapped for its whole life, so uploads are a plain memory
+ * copy and never wait for the driver to synchronize with draws that still read the buffer.<p>
+ * The buffer is split into one segment per frame in flight. Every write of a frame goes into the segment of the
+ * frame, and {@link #nextFrame()} places a fence after the commands that read it and moves to the next one. A segment
+ * is only written again once its fence signals, so with three segments the CPU only waits if the GPU is two whole
+ * frames behind. Segments must hold every write of a frame: when one is full, {@link #write(FloatBuffer, int)} fails
+ * instead of reusing a segment the GPU may still read, so the owner can replace the ring with a larger one.<p>
+ * Needs {@code ARB_buffer_storage} (core in OpenGL 4.4), see {@link #isSupported()}.
+ *
+ * @author C8FF
+ */
+public class PersistentRingBuffer {
+	/**
+	 * How long to wait for a fence before checking it again, in nanoseconds.
+	 */
+	private static final long FENCE_TIMEOUT = 1_000_000;
+
+	private final int segmentSize;
+	private final long[] fences;
+	/**
+	 * The address of the persistent, coherent mapping of the whole buffer.
+	 */
+	private final long address;
+	private int segment;
+	/**
+	 * The offset of the next write, from the start of the buffer.
+	 */
+	private int head;
+
+	/**
+	 * Allocates the storage of the buffer bound to {@code GL_ARRAY_BUFFER} and maps it. The storage of the buffer can't
+	 * be changed after this.
+	 *
+	 * @param segmentSize The size of each segment in bytes, which is what a frame can write.
+	 * @param segments    The amount of frames in flight. Three lets the GPU read one frame while the next is written.
+	 */
+	public PersistentRingBuffer(int segmentSize, int segments) {
+		if (segments < 2) throw new IllegalArgumentException("segments < 2");
+
+		this.segmentSize = segmentSize;
+		this.fences = new long[segments];
+
+		int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+		long size = (long) segmentSize * segments;
+		GL44.glBufferStorage(GL15.GL_ARRAY_BUFFER, size, flags);
+		ByteBuffer mapped = GL30.glMapBufferRange(GL15.GL_ARRAY_BUFFER, 0, size, flags);
+		if (mapped == null) {
+			throw new IllegalStateException("Failed to map the buffer");
+		}
+		this.address = MemoryUtil.memAddress(mapped);
+	}
+
+	/**
+	 * @return True if the current context supports persistent mapping.
+	 */
+	public static boolean isSupported() {
+		GLCapabilities capabilities = GL.getCapabilities();
+		return capabilities.OpenGL44 || capabilities.GL_ARB_buffer_storage;
+	}
+
+	/**
+	 * Copies data into the segment of the current frame. The data must be read by commands issued before the next call
+	 * to {@link #nextFrame()}.
+	 *
+	 * @param data      The data, from its position to its limit. It must be a direct buffer.
+	 * @param alignment The offset of the data is a multiple of this, in bytes. Use the size of a vertex to draw the
+	 *                  data with a base vertex.
+	 * @return The offset of the data in the buffer in bytes, or {@code -1} if the segment doesn't have enough space left.
+	 */
+	public int write(FloatBuffer data, int alignment) {
+		return this.write(MemoryUtil.memAddress(data), data.remaining() * Float.BYTES, alignment);
+	}
+
+	/**
+	 * Copies data into the buffer, like {@link #write(FloatBuffer, int)}.
+	 *
+	 * @param data The data, from its position to its limit. It must be a direct buffer.
+	 * @return The offset of the data in the buffer in bytes, or {@code -1} if it doesn't fit.
+	 */
+	public int write(ByteBuffer data, int alignment) {
+		return this.write(MemoryUtil.memAddress(data), data.remaining(), alignment);
+	}
+
+	private int write(long data, int bytes, int alignment) {
+		int offset = align(this.head, alignment);
+		if ((long) offset + bytes > (long) (this.segment + 1) * this.segmentSize) {
+			return -1;
+		}
+
+		MemoryUtil.memCopy(data, this.address + offset, bytes);
+		this.head = offset + bytes;
+		return offset;
+	}
+
+	/**
+	 * Ends the frame: fences the commands issued so far, which read the current segment, and moves to the next
+	 * segment, waiting until the GPU has finished the frame that last used it.
+	 */
+	public void nextFrame() {
+		if (this.head == this.segment * this.segmentSize) {
+			// Nothing was written this frame, so the segment can keep being used.
+			return;
+		}
+
+		this.fences[this.segment] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		this.segment = (this.segment + 1) % this.fences.length;
+
+		long fence = this.fences[this.segment];
+		if (fence != 0) {
+			int status;
+			do {
+				status = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+			} while (status == GL32.GL_TIMEOUT_EXPIRED);
+			GL32.glDeleteSync(fence);
+			this.fences[this.segment] = 0;
+		}
+
+		this.head = this.segment * this.segmentSize;
+	}
+
+	private static int align(int offset, int alignment) {
+		int remainder = offset % alignment;
+		return remainder == 0 ? offset : offset + alignment - remainder;
+	}
+
+	public int getSegmentSize() {
+		return this.segmentSize;
+	}
+
+	public int getSegmentCount() {
+		return this.fences.length;
+	}
+
+	/**
+	 * @return The amount of bytes written in the current frame, including alignment.
+	 */
+	public int getFrameUsage() {
+		return this.head - this.segment * this.segmentSize;
+	}
+
+	/**
+	 * Deletes the fences. The buffer itself belongs to whoever created it, and deleting it also unmaps it.
+	 */
+	public void delete() {
+		for (int i = 0; i < this.fences.length; i++) {
+			if (this.fences[i] != 0) {
+				GL32.glDeleteSync(this.fences[i]);
+				this.fences[i] = 0;
+			}
+		}
+	}
+}
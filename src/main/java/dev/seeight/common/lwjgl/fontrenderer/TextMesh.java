@@ -0,0 +1,202 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import dev.seeight.common.lwjgl.font.FontTextureArray;
+import dev.seeight.common.lwjgl.font.IFont;
+import dev.seeight.renderer.renderer.gl.components.GLArrayBufferObject;
+import dev.seeight.renderer.renderer.gl.components.GLVertexArrayObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.FloatBuffer;
+
+/**
+ * The quads of a text, built once and kept in the GPU. Drawing it (see {@link BufferedFontRenderer#drawMesh(TextMesh, float, float)})
+ * doesn't touch any glyph on the CPU, so text that doesn't change costs the same every frame no matter how long it is.<p>
+ * Positions are relative to where the text starts, with the scale and color the renderer had when it was compiled
+ * (see {@link BufferedFontRenderer#compile(IFont, String)}). With a compact vertex format, positions can't be further
+ * from the start than {@link VertexFormat#getPositionRange()}. Meshes must be deleted with {@link #delete()}.<p>
+ * The text of a mesh can be changed with {@link BufferedFontRenderer#update(TextMesh, IFont, String)}, which only
+ * uploads the glyphs that changed. A copy of the quads is kept in memory to compare them.<p>
+ * The pages the mesh samples are retained with {@link IFont#retainPage(int)} until it's deleted or updated with other
+ * pages, so fonts that rasterize glyphs on demand (like {@link dev.seeight.common.lwjgl.font.DynamicTTFFont}) don't
+ * reuse them even in frames where the mesh isn't drawn. Long-lived meshes of those fonts use up their page budget,
+ * so they should be deleted once they aren't needed.
+ *
+ * @author C8FF
+ */
+public class TextMesh {
+	final BufferedFontRenderer renderer;
+	/**
+	 * Holds the quads of every part.
+	 */
+	final GLArrayBufferObject vbo;
+	/**
+	 * Reads the parts that use their own texture, or {@code null} if there weren't any yet.
+	 */
+	@Nullable GLVertexArrayObject vao;
+	/**
+	 * Reads the parts that use the {@link #textureArray}, or {@code null} if there weren't any yet.
+	 */
+	@Nullable GLVertexArrayObject layeredVao;
+	/**
+	 * The texture array the renderer had when the mesh was compiled.
+	 */
+	@Nullable FontTextureArray textureArray;
+	/**
+	 * The parts, in the order the renderer built them.
+	 */
+	Part[] parts;
+	/**
+	 * A copy of the data store, compared with new text to find what changed.
+	 */
+	FloatBuffer data;
+	/**
+	 * The size of the data store, in bytes.
+	 */
+	long size;
+	private int quadCount;
+	private float advance;
+	private float minX;
+	private float minY;
+	private float maxX;
+	private float maxY;
+	private boolean deleted;
+
+	TextMesh(BufferedFontRenderer renderer, GLArrayBufferObject vbo) {
+		this.renderer = renderer;
+		this.vbo = vbo;
+	}
+
+	/**
+	 * Replaces the parts and the layout of the text.
+	 */
+	void set(Part[] parts, float advance, float minX, float minY, float maxX, float maxY) {
+		this.parts = parts;
+		this.advance = advance;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+
+		int quadCount = 0;
+		for (Part part : parts) {
+			quadCount += part.quads;
+		}
+		this.quadCount = quadCount;
+	}
+
+	/**
+	 * @return The amount of glyphs with pixels.
+	 */
+	public int getQuadCount() {
+		return this.quadCount;
+	}
+
+	/**
+	 * @return The amount of draw calls needed, one per texture.
+	 */
+	public int getPartCount() {
+		return this.parts.length;
+	}
+
+	/**
+	 * @return The size of the data store of the mesh, in bytes.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return The X position where the pen ended, relative to the start of the text.
+	 */
+	public float getAdvance() {
+		return this.advance;
+	}
+
+	/**
+	 * @return The left edge of the quads, relative to the start of the text.
+	 */
+	public float getMinX() {
+		return this.minX;
+	}
+
+	/**
+	 * @return The top edge of the quads, relative to the start of the text.
+	 */
+	public float getMinY() {
+		return this.minY;
+	}
+
+	/**
+	 * @return The right edge of the quads, relative to the start of the text.
+	 */
+	public float getMaxX() {
+		return this.maxX;
+	}
+
+	/**
+	 * @return The bottom edge of the quads, relative to the start of the text.
+	 */
+	public float getMaxY() {
+		return this.maxY;
+	}
+
+	public float getWidth() {
+		return this.maxX - this.minX;
+	}
+
+	public float getHeight() {
+		return this.maxY - this.minY;
+	}
+
+	public boolean isDeleted() {
+		return this.deleted;
+	}
+
+	/**
+	 * Deletes the data store of the mesh. It can't be drawn after this.
+	 */
+	public void delete() {
+		if (this.deleted) {
+			return;
+		}
+
+		this.deleted = true;
+		this.vbo.delete();
+		if (this.vao != null) {
+			this.vao.delete();
+		}
+		if (this.layeredVao != null) {
+			this.layeredVao.delete();
+		}
+		this.renderer.onMeshDeleted(this);
+	}
+
+	/**
+	 * The quads of a mesh that use the same texture, or the same texture array.
+	 *
+	 * @param offset   The offset of the part in the data store, in floats.
+	 * @param base     The first vertex of the part, or the first instance if the renderer is instanced.
+	 * @param quads    The amount of quads.
+	 * @param capacity The amount of quads that fit before the next part.
+	 */
+	record Part(IFont font, int page, boolean layered, int offset, int base, int quads, int capacity) {
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * How the vertices of glyphs are stored in the GPU. Quads are always built with floats (see {@link GlyphQuadBuffer}),
+ * and packed into the format right before they're uploaded.<p>
+ * The compact formats store texture coordinates as normalized 16-bit integers, colors as normalized bytes and layers
+ * as 16-bit integers, and only differ in positions. They take less than half the bytes of {@link #FLOAT}.<p>
+ * Compact positions are stored relative to an origin, the center of each batch or the start of each mesh, and moved
+ * back by the vertex shader, so their precision doesn't depend on where the text is drawn. Batches that would go past
+ * the {@linkplain #getPositionRange() range} of the format are split, and meshes can't go past it. {@link #SHORT} is the
+ * recommended compact format.
+ *
+ * @author C8FF
+ */
+public enum VertexFormat {
+	/**
+	 * Every value is a 32-bit float. Quads are uploaded without packing them.
+	 */
+	FLOAT,
+	/**
+	 * Positions are 16-bit floats. Their precision drops with the distance to the origin: quarters of a unit are exact
+	 * up to 512, whole units up to 2048, and steps are coarser past that. Prefer {@link #SHORT}.
+	 */
+	HALF_FLOAT,
+	/**
+	 * Positions are 16-bit integers in quarters of a unit, so they keep the same precision from -8192 to 8191.75 units
+	 * away from the origin. This is the recommended compact format.
+	 */
+	SHORT;
+
+	/**
+	 * The amount of steps per unit of {@link #SHORT} positions.
+	 */
+	public static final float SHORT_POSITION_STEPS = 4;
+	private static final boolean NATIVE_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * @param instanced Whether the vertices are instance records (see {@link InstancedFontRenderer}).
+	 * @param layered   Whether the vertices have a layer of a texture array.
+	 * @return The size of a vertex, or an instance record, in bytes.
+	 */
+	public int getStride(boolean instanced, boolean layered) {
+		if (this == FLOAT) {
+			return GlyphQuadBuffer.getStride(instanced, layered) * Float.BYTES;
+		}
+
+		// Positions and texture coordinates, 16 bits each, and four bytes of color.
+		int components = instanced ? 4 : 2;
+		int stride = components * Short.BYTES * 2 + 4;
+		// The layer is padded to keep vertices aligned to four bytes.
+		return layered ? stride + 4 : stride;
+	}
+
+	/**
+	 * @return How far from the origin positions can be while keeping whole units exact.
+	 */
+	public float getPositionRange() {
+		return switch (this) {
+			case FLOAT -> Float.POSITIVE_INFINITY;
+			case HALF_FLOAT -> 2048;
+			case SHORT -> Short.MAX_VALUE / SHORT_POSITION_STEPS;
+		};
+	}
+
+	/**
+	 * @return What positions are multiplied by in the vertex shader.
+	 */
+	public float getPositionScale() {
+		return this == SHORT ? 1 / SHORT_POSITION_STEPS : 1;
+	}
+
+	/**
+	 * Packs vertices built by a {@link GlyphQuadBuffer} into this format, with positions relative to {@code 0, 0}.
+	 *
+	 * @see #pack(FloatBuffer, boolean, boolean, float, float, Scratch)
+	 */
+	public @NotNull ByteBuffer pack(FloatBuffer vertices, boolean instanced, boolean layered, Scratch scratch) {
+		return this.pack(vertices, instanced, layered, 0, 0, scratch);
+	}
+
+	/**
+	 * Packs vertices built by a {@link GlyphQuadBuffer} into this format. Packing {@link #FLOAT} vertices returns a
+	 * view of the same memory instead, so the origin must be {@code 0, 0}.<p>
+	 * The vertices are copied into a {@code float[]} and packed with one pass per attribute into a {@code short[]},
+	 * which is then copied into the buffer at once. Every pass is a loop over primitive arrays without branches or
+	 * calls, which the JIT compiler can unroll and vectorize.
+	 *
+	 * @param vertices  The vertices, from their position to their limit. It must be a direct buffer.
+	 * @param instanced Whether the vertices are instance records.
+	 * @param layered   Whether the vertices have a layer.
+	 * @param originX   Subtracted from the X of the positions, to be added back when drawing them.
+	 * @param originY   Subtracted from the Y of the positions.
+	 * @param scratch   The arrays and buffer to pack with. They grow as needed.
+	 * @return The packed vertices, from position 0 to the limit. Either the buffer of {@code scratch} or a view of
+	 * {@code vertices}.
+	 */
+	public @NotNull ByteBuffer pack(FloatBuffer vertices, boolean instanced, boolean layered, float originX, float originY, Scratch scratch) {
+		if (this == FLOAT) {
+			if (originX != 0 || originY != 0) throw new IllegalArgumentException("FLOAT vertices can't be moved to an origin");
+			return MemoryUtil.memByteBuffer(MemoryUtil.memAddress(vertices), vertices.remaining() * Float.BYTES);
+		}
+
+		int inStride = GlyphQuadBuffer.getStride(instanced, layered);
+		int outStride = this.getStride(instanced, layered) / Short.BYTES;
+		int count = vertices.remaining() / inStride;
+		float[] in = scratch.getInput(count * inStride);
+		short[] out = scratch.getOutput(count * outStride);
+		vertices.get(vertices.position(), in, 0, count * inStride);
+
+		int components = instanced ? 4 : 2;
+		for (int j = 0; j < components; j++) {
+			// Records have the size after the position, which isn't moved.
+			float origin = j >= 2 ? 0 : j == 0 ? originX : originY;
+			if (this == HALF_FLOAT) {
+				packHalf(in, j, inStride, out, j, outStride, count, origin);
+			} else {
+				packFixed(in, j, inStride, out, j, outStride, count, origin);
+			}
+		}
+		for (int j = 0; j < components; j++) {
+			packUnorm16(in, components + j, inStride, out, components + j, outStride, count);
+		}
+		for (int j = 0; j < 2; j++) {
+			packUnorm8(in, components * 2 + j * 2, inStride, out, components * 2 + j, outStride, count);
+		}
+		if (layered) {
+			packLayer(in, components * 2 + 4, inStride, out, components * 2 + 2, outStride, count);
+		}
+
+		return scratch.getBuffer(out, count * outStride);
+	}
+
+	private static void packHalf(float[] in, int inOffset, int inStride, short[] out, int outOffset, int outStride, int count, float origin) {
+		for (int i = 0; i < count; i++) {
+			out[i * outStride + outOffset] = toHalf(in[i * inStride + inOffset] - origin);
+		}
+	}
+
+	private static void packFixed(float[] in, int inOffset, int inStride, short[] out, int outOffset, int outStride, int count, float origin) {
+		for (int i = 0; i < count; i++) {
+			float value = Math.min(Math.max((in[i * inStride + inOffset] - origin) * SHORT_POSITION_STEPS, Short.MIN_VALUE), Short.MAX_VALUE);
+			// Biased to be positive, so truncating rounds to the nearest.
+			out[i * outStride + outOffset] = (short) ((int) (value + 32768.5F) - 32768);
+		}
+	}
+
+	private static void packUnorm16(float[] in, int inOffset, int inStride, short[] out, int outOffset, int outStride, int count) {
+		for (int i = 0; i < count; i++) {
+			float value = Math.min(Math.max(in[i * inStride + inOffset], 0), 1);
+			out[i * outStride + outOffset] = (short) (int) (value * 0xFFFF + 0.5F);
+		}
+	}
+
+	/**
+	 * Packs two adjacent values into two normalized bytes, stored in a short in the native byte order.
+	 */
+	private static void packUnorm8(float[] in, int inOffset, int inStride, short[] out, int outOffset, int outStride, int count) {
+		int firstShift = NATIVE_LITTLE_ENDIAN ? 0 : 8;
+		int secondShift = 8 - firstShift;
+		for (int i = 0; i < count; i++) {
+			int first = (int) (Math.min(Math.max(in[i * inStride + inOffset], 0), 1) * 0xFF + 0.5F);
+			int second = (int) (Math.min(Math.max(in[i * inStride + inOffset + 1], 0), 1) * 0xFF + 0.5F);
+			out[i * outStride + outOffset] = (short) (first << firstShift | second << secondShift);
+		}
+	}
+
+	/**
+	 * Packs the layer, followed by a short of padding.
+	 */
+	private static void packLayer(float[] in, int inOffset, int inStride, short[] out, int outOffset, int outStride, int count) {
+		for (int i = 0; i < count; i++) {
+			float value = Math.min(Math.max(in[i * inStride + inOffset], 0), 0xFFFF);
+			out[i * outStride + outOffset] = (short) (int) (value + 0.5F);
+			out[i * outStride + outOffset + 1] = 0;
+		}
+	}
+
+	/**
+	 * Converts a float into the bits of the closest 16-bit float, rounding ties to even, without branches. Values too
+	 * large for a 16-bit float, and NaN, become infinite.
+	 */
+	static short toHalf(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		// 65536 is the first value that rounds to infinity, and its bits become exactly the infinity of 16-bit floats.
+		int magnitude = Math.min(bits & 0x7FFFFFFF, 0x47800000);
+
+		// Normal: move the exponent from a bias of 127 to 15, and round the 13 dropped bits to even.
+		int normal = (magnitude + 0xC8000FFF + ((magnitude >>> 13) & 1)) >>> 13;
+		// Subnormal: adding 0.5 moves the bits into place, and the float unit rounds them.
+		int subnormal = Float.floatToRawIntBits(Float.intBitsToFloat(magnitude) + 0.5F) - 0x3F000000;
+		// All ones if the value is lower than the smallest normal 16-bit float.
+		int isSubnormal = (magnitude - 0x38800000) >> 31;
+		return (short) (sign | (subnormal & isSubnormal) | (normal & ~isSubnormal));
+	}
+
+	/**
+	 * The arrays and buffer used to pack vertices, kept between calls so packing doesn't allocate.
+	 */
+	public static final class Scratch {
+		private float[] input = new float[0];
+		private short[] output = new short[0];
+		private ByteBuffer buffer;
+		private ShortBuffer shorts;
+
+		private float[] getInput(int length) {
+			if (this.input.length < length) {
+				this.input = new float[Math.max(length, this.input.length * 2)];
+			}
+			return this.input;
+		}
+
+		private short[] getOutput(int length) {
+			if (this.output.length < length) {
+				this.output = new short[Math.max(length, this.output.length * 2)];
+			}
+			return this.output;
+		}
+
+		/**
+		 * Copies the packed shorts into the buffer, allocating a larger one if needed.
+		 */
+		private ByteBuffer getBuffer(short[] packed, int length) {
+			if (this.buffer == null || this.shorts.capacity() < length) {
+				int capacity = Math.max(length, this.shorts == null ? 0 : this.shorts.capacity() * 2);
+				this.buffer = ByteBuffer.allocateDirect(capacity * Short.BYTES).order(ByteOrder.nativeOrder());
+				this.shorts = this.buffer.asShortBuffer();
+			}
+			this.shorts.clear();
+			this.shorts.put(packed, 0, length);
+			return this.buffer.clear().limit(length * Short.BYTES);
+		}
+	}
+}
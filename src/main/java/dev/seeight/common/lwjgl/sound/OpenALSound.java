@@ -22,12 +22,15 @@ import dev.seeight.common.lwjgl.util.IOUtil;
 import org.lwjgl.openal.AL10;
 import org.lwjgl.stb.STBVorbis;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.libc.LibCStdlib;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.nio.file.Path;
 
 /**
  * A class that represents a sound in OpenAL.
@@ -245,6 +248,22 @@ public class OpenALSound implements ISound {
 	}
 
 	public static OpenALSound fromInputStream(InputStream stream) throws IOException {
+		ByteBuffer vorbis = IOUtil.nativeBufferFrom(stream);
+		try {
+			return fromMemory(vorbis, "input stream." + stream);
+		} finally {
+			MemoryUtil.memFree(vorbis);
+		}
+	}
+
+	/**
+	 * Creates a sound from an ogg file, memory-mapping it instead of reading it.
+	 */
+	public static OpenALSound fromPath(Path path) throws IOException {
+		return fromMemory(IOUtil.map(path), "file '" + path + "'.");
+	}
+
+	private static OpenALSound fromMemory(ByteBuffer vorbis, String source) {
 		ShortBuffer rawAudioBuffer;
 
 		OpenALSound f;
@@ -252,10 +271,10 @@ public class OpenALSound implements ISound {
 			IntBuffer channelsBuffer = stack.mallocInt(1);
 			IntBuffer sampleRateBuffer = stack.mallocInt(1);
 
-			rawAudioBuffer = STBVorbis.stb_vorbis_decode_memory(IOUtil.byteBufferFrom(stream), channelsBuffer, sampleRateBuffer);
+			rawAudioBuffer = STBVorbis.stb_vorbis_decode_memory(vorbis, channelsBuffer, sampleRateBuffer);
 
 			if (rawAudioBuffer == null) {
-				throw new RuntimeException("Couldn't load sound from input stream." + stream);
+				throw new RuntimeException("Couldn't load sound from " + source);
 			}
 
 			f = new OpenALSound(channelsBuffer.get(), sampleRateBuffer.get(), rawAudioBuffer);
@@ -0,0 +1,104 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.svg;
+
+import dev.seeight.renderer.renderer.Texture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A texture holding several rasterized SVGs, created by {@link SVGRasterContext#glAtlasFromBytes(Map, float)}.
+ *
+ * @author C8FF
+ */
+public class SVGAtlas {
+	private final Texture texture;
+	private final Map<String, Region> regions;
+	private final float packingEfficiency;
+
+	SVGAtlas(Texture texture, String[] names, int[] rects, float packingEfficiency) {
+		this.texture = texture;
+		this.packingEfficiency = packingEfficiency;
+		this.regions = new HashMap<>();
+
+		float width = texture.getWidth();
+		float height = texture.getHeight();
+		for (int i = 0; i < names.length; i++) {
+			int x = rects[i * 4];
+			int y = rects[i * 4 + 1];
+			int w = rects[i * 4 + 2];
+			int h = rects[i * 4 + 3];
+			this.regions.put(names[i], new Region(x, y, w, h, x / width, y / height, (x + w) / width, (y + h) / height));
+		}
+	}
+
+	public @NotNull Texture getTexture() {
+		return this.texture;
+	}
+
+	/**
+	 * @return The region of the SVG with the specified name. {@code null} if it isn't part of the atlas.
+	 */
+	public @Nullable Region getRegion(String name) {
+		return this.regions.get(name);
+	}
+
+	/**
+	 * @return The fraction of the texture covered by SVGs, from 0 to 1.
+	 */
+	public float getPackingEfficiency() {
+		return this.packingEfficiency;
+	}
+
+	/**
+	 * Deletes the texture of the atlas.
+	 */
+	public void delete() {
+		GL11.glDeleteTextures(this.texture.getId());
+	}
+
+	/**
+	 * The position of an SVG in the atlas, in pixels and texture coordinates.
+	 */
+	public static class Region {
+		public final int x;
+		public final int y;
+		public final int width;
+		public final int height;
+		public final float u;
+		public final float v;
+		public final float u2;
+		public final float v2;
+
+		public Region(int x, int y, int width, int height, float u, float v, float u2, float v2) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.u = u;
+			this.v = v;
+			this.u2 = u2;
+			this.v2 = v2;
+		}
+	}
+}
@@ -18,6 +18,7 @@
 
 package dev.seeight.common.lwjgl.svg;
 
+import dev.seeight.common.lwjgl.util.SkylinePacker;
 import dev.seeight.renderer.renderer.Texture;
 import dev.seeight.renderer.renderer.gl.components.GLTexture;
 import org.apache.commons.io.IOUtils;
@@ -34,6 +35,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -57,9 +60,10 @@ public class SVGRasterContext implements AutoCloseable {
 		return this;
 	}
 
-	public void _svgImageFromBytes(byte[] bytes, Consumer<NSVGImage> consumer) throws NullPointerException {
-		assertNotDeleted();
-
+	/**
+	 * Parses an SVG. The returned image must be freed with {@link NanoSVG#nsvgDelete(NSVGImage)}.
+	 */
+	protected NSVGImage parse(byte[] bytes) throws NullPointerException {
 		NSVGImage s;
 
 		try (MemoryStack stack = MemoryStack.stackPush()) {
@@ -73,6 +77,13 @@ public class SVGRasterContext implements AutoCloseable {
 		}
 
 		if (s == null) throw new NullPointerException();
+		return s;
+	}
+
+	public void _svgImageFromBytes(byte[] bytes, Consumer<NSVGImage> consumer) throws NullPointerException {
+		assertNotDeleted();
+
+		NSVGImage s = parse(bytes);
 
 		try {
 			consumer.accept(s);
@@ -127,30 +138,102 @@ public class SVGRasterContext implements AutoCloseable {
 
 		AtomicReference<Texture> raster = new AtomicReference<>();
 
-		raster(svgBytes, scale, (imageData, width, height) -> {
-			// Save currently bound texture.
-			int b = GL11.glGetInteger(GL11.GL_TEXTURE_BINDING_2D);
+		raster(svgBytes, scale, (imageData, width, height) -> raster.set(this.upload(imageData, width, height)));
+
+		return raster.get();
+	}
+
+	/**
+	 * Rasterizes several SVGs into a single texture, packed with a {@link SkylinePacker}.
+	 * The texture starts small and grows in powers of two until every SVG fits.
+	 *
+	 * @param svgs  The bytes of each SVG, by name.
+	 * @param scale The scale applied to every SVG.
+	 * @return The atlas with the texture and the region of each SVG.
+	 * @throws IllegalStateException If the SVGs don't fit in the maximum texture size.
+	 */
+	public SVGAtlas glAtlasFromBytes(Map<String, byte[]> svgs, float scale) {
+		assertNotDeleted();
+
+		String[] names = svgs.keySet().toArray(new String[0]);
+		NSVGImage[] images = new NSVGImage[names.length];
+		int[] rects = new int[names.length * 4];
 
-			// Create new texture
-			int texID = GL11.glGenTextures();
-			GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
+		try {
+			// Sort by height, keeping the index in the lower bits.
+			long[] order = new long[names.length];
+			for (int i = 0; i < names.length; i++) {
+				images[i] = parse(svgs.get(names[i]));
+				rects[i * 4 + 2] = (int) (images[i].width() * scale);
+				rects[i * 4 + 3] = (int) (images[i].height() * scale);
+				order[i] = ((long) rects[i * 4 + 3] << 32) | i;
+			}
+			Arrays.sort(order);
+
+			// Pack the tallest images first. The padding avoids bleeding between icons with mip maps.
+			int maxSize = GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE);
+			SkylinePacker packer = new SkylinePacker(64, 64, 2, maxSize);
+			int[] position = new int[2];
+			for (int j = order.length - 1; j >= 0; j--) {
+				int i = (int) order[j];
+				if (!packer.pack(rects[i * 4 + 2], rects[i * 4 + 3], position)) {
+					throw new IllegalStateException("The SVGs don't fit in a " + maxSize + "x" + maxSize + " texture.");
+				}
+				rects[i * 4] = position[0];
+				rects[i * 4 + 1] = position[1];
+			}
+
+			int width = packer.getWidth();
+			int height = packer.getHeight();
+			int colorChannels = 4;
+
+			ByteBuffer imageData = MemoryUtil.memCalloc(width * height * colorChannels);
+			try {
+				// Raster each image into its region, using the width of the atlas as the stride.
+				for (int i = 0; i < names.length; i++) {
+					int w = rects[i * 4 + 2];
+					int h = rects[i * 4 + 3];
+					if (w <= 0 || h <= 0) continue;
+
+					long address = MemoryUtil.memAddress(imageData) + ((long) rects[i * 4 + 1] * width + rects[i * 4]) * colorChannels;
+					NanoSVG.nnsvgRasterize(context, images[i].address(), 0, 0, scale, address, w, h, width * colorChannels);
+				}
+
+				return new SVGAtlas(this.upload(imageData, width, height), names, rects, packer.getEfficiency());
+			} finally {
+				MemoryUtil.memFree(imageData);
+			}
+		} finally {
+			for (NSVGImage image : images) {
+				if (image != null) NanoSVG.nsvgDelete(image);
+			}
+		}
+	}
 
-			// Apply texture parameters.
-			this.applyNewTextureParameters();
+	/**
+	 * Creates a texture with the RGBA {@code imageData}.
+	 */
+	protected Texture upload(ByteBuffer imageData, int width, int height) {
+		// Save currently bound texture.
+		int b = GL11.glGetInteger(GL11.GL_TEXTURE_BINDING_2D);
 
-			// Upload data.
-			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, imageData);
+		// Create new texture
+		int texID = GL11.glGenTextures();
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
 
-			// Create mip map of texture.
-			this.genMipMap();
+		// Apply texture parameters.
+		this.applyNewTextureParameters();
 
-			// Restore previous bound texture
-			GL11.glBindTexture(GL11.GL_TEXTURE_2D, b);
+		// Upload data.
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, imageData);
 
-			raster.set(new GLTexture(texID, width, height));
-		});
+		// Create mip map of texture.
+		this.genMipMap();
 
-		return raster.get();
+		// Restore previous bound texture
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, b);
+
+		return new GLTexture(texID, width, height);
 	}
 
 	protected void applyNewTextureParameters() {
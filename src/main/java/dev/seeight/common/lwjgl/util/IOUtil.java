@@ -22,12 +22,19 @@ import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryUtil;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class IOUtil {
     @Contract("_, _ -> new")
@@ -71,4 +78,74 @@ public class IOUtil {
         buff.flip();
         return buff;
     }
+
+    /**
+     * Memory-maps a whole file as read-only. The contents aren't copied, they are paged in by the OS when read,
+     * and the buffer can be passed directly to native functions like {@code stbtt_InitFont}.<p>
+     * The mapping stays valid until the buffer is garbage collected, even after the file is closed.
+     */
+    public static @NotNull MappedByteBuffer map(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(channel);
+        }
+    }
+
+    /**
+     * Memory-maps the whole file of the {@code channel} as read-only. The channel isn't closed.
+     *
+     * @see #map(Path)
+     */
+    public static @NotNull MappedByteBuffer map(@NotNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too big to be mapped: " + size + " bytes");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Reads all bytes from the stream into a native buffer and closes the stream.
+     *
+     * @see #nativeBufferFrom(InputStream, int)
+     */
+    public static @NotNull ByteBuffer nativeBufferFrom(@NotNull InputStream stream) throws IOException {
+        return nativeBufferFrom(stream, stream.available());
+    }
+
+    /**
+     * Reads all bytes from the stream into a native buffer and closes the stream. The bytes are copied once, into
+     * a buffer allocated with {@link MemoryUtil#memAlloc(int)} that only grows if the stream is longer than expected.<p>
+     * The buffer isn't managed by the garbage collector: it must be freed with {@link MemoryUtil#memFree(java.nio.Buffer)}
+     * once it's no longer used.
+     *
+     * @param expectedSize The expected length of the stream, like the size of the file.
+     */
+    public static @NotNull ByteBuffer nativeBufferFrom(@NotNull InputStream stream, int expectedSize) throws IOException {
+        ByteBuffer buffer = MemoryUtil.memAlloc(Math.max(expectedSize, 8192));
+        try (ReadableByteChannel channel = Channels.newChannel(stream)) {
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    // Check for the end before growing, so streams of the expected size don't reallocate.
+                    int next = stream.read();
+                    if (next == -1) {
+                        break;
+                    }
+
+                    buffer = MemoryUtil.memRealloc(buffer, buffer.capacity() * 2);
+                    buffer.put((byte) next);
+                }
+
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            MemoryUtil.memFree(buffer);
+            throw e;
+        }
+
+        buffer.flip();
+        return buffer;
+    }
 }
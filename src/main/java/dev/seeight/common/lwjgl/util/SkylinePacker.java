@@ -0,0 +1,289 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.util;
+
+import java.util.Arrays;
+
+/**
+ * Packs rectangles into a texture atlas using the skyline bottom-left heuristic.<p>
+ * The packer keeps the top edge (the skyline) of the packed rectangles as a list of horizontal segments,
+ * and places each new rectangle where its top ends lowest. When a maximum size is given, the atlas grows
+ * to the next power of two (alternating width and height) whenever a rectangle doesn't fit.
+ * Growing never moves the rectangles that were already packed, but their normalized coordinates change,
+ * so UVs must be calculated after packing.
+ *
+ * @author C8FF
+ */
+public class SkylinePacker {
+	private final int padding;
+	private final int maxSize;
+	private int width;
+	private int height;
+
+	// The skyline segments, sorted by X.
+	private int[] nodeX = new int[16];
+	private int[] nodeY = new int[16];
+	private int[] nodeWidth = new int[16];
+	private int nodeCount;
+
+	private long usedArea;
+	private int packedCount;
+
+	/**
+	 * Creates a packer with a fixed size.
+	 *
+	 * @param width   The width of the atlas.
+	 * @param height  The height of the atlas.
+	 * @param padding The empty space to keep between rectangles and the edges of the atlas.
+	 */
+	public SkylinePacker(int width, int height, int padding) {
+		this(width, height, padding, 0);
+	}
+
+	/**
+	 * Creates a packer that grows up to {@code maxSize} in powers of two.
+	 *
+	 * @param width   The initial width of the atlas.
+	 * @param height  The initial height of the atlas.
+	 * @param padding The empty space to keep between rectangles and the edges of the atlas.
+	 * @param maxSize The maximum width and height of the atlas. Zero or lower disables growing.
+	 */
+	public SkylinePacker(int width, int height, int padding, int maxSize) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("width and height must be positive");
+		if (padding < 0) throw new IllegalArgumentException("padding < 0");
+
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+		this.maxSize = maxSize;
+		this.clear();
+	}
+
+	/**
+	 * Finds space for a rectangle, growing the atlas if necessary and allowed.
+	 *
+	 * @param width    The width of the rectangle.
+	 * @param height   The height of the rectangle.
+	 * @param position Receives the X (index 0) and Y (index 1) of the rectangle.
+	 * @return False if the rectangle doesn't fit.
+	 */
+	public boolean pack(int width, int height, int[] position) {
+		if (width < 0 || height < 0) throw new IllegalArgumentException("negative size");
+
+		// Empty rectangles don't use any space.
+		if (width == 0 || height == 0) {
+			position[0] = 0;
+			position[1] = 0;
+			return true;
+		}
+
+		while (!this.tryPack(width, height, position)) {
+			if (!this.grow()) {
+				return false;
+			}
+		}
+
+		this.usedArea += (long) width * height;
+		this.packedCount++;
+		return true;
+	}
+
+	/**
+	 * Removes every rectangle from the atlas. The size of the atlas is kept.
+	 */
+	public void clear() {
+		this.nodeCount = 1;
+		this.nodeX[0] = this.padding;
+		this.nodeY[0] = this.padding;
+		this.nodeWidth[0] = this.width - this.padding;
+		this.usedArea = 0;
+		this.packedCount = 0;
+	}
+
+	/**
+	 * @return The current width of the atlas.
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return The current height of the atlas.
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return The amount of rectangles that were packed.
+	 */
+	public int getPackedCount() {
+		return this.packedCount;
+	}
+
+	/**
+	 * @return The area of the atlas covered by rectangles, without padding.
+	 */
+	public long getUsedArea() {
+		return this.usedArea;
+	}
+
+	/**
+	 * @return The fraction of the atlas covered by rectangles, from 0 to 1.
+	 */
+	public float getEfficiency() {
+		return (float) ((double) this.usedArea / ((double) this.width * this.height));
+	}
+
+	/**
+	 * Doubles the smaller side of the atlas.
+	 *
+	 * @return False if the atlas can't grow anymore.
+	 */
+	private boolean grow() {
+		if (this.maxSize <= 0) return false;
+
+		if (this.width <= this.height && this.width < this.maxSize) {
+			int newWidth = Math.min(nextPowerOfTwo(this.width + 1), this.maxSize);
+
+			// The new area on the right starts empty.
+			int last = this.nodeCount - 1;
+			if (this.nodeY[last] == this.padding) {
+				this.nodeWidth[last] += newWidth - this.width;
+			} else {
+				this.insertNode(this.nodeCount, this.width, this.padding, newWidth - this.width);
+			}
+			this.width = newWidth;
+			return true;
+		}
+
+		if (this.height < this.maxSize) {
+			this.height = Math.min(nextPowerOfTwo(this.height + 1), this.maxSize);
+			return true;
+		}
+
+		return false;
+	}
+
+	private boolean tryPack(int width, int height, int[] position) {
+		int w = width + this.padding;
+		int h = height + this.padding;
+
+		int bestIndex = -1;
+		int bestTop = Integer.MAX_VALUE;
+		int bestWidth = Integer.MAX_VALUE;
+		int bestY = 0;
+		for (int i = 0; i < this.nodeCount; i++) {
+			int y = this.fit(i, w, h);
+			if (y < 0) continue;
+
+			// Lowest top first, then the narrowest segment to leave less waste.
+			int top = y + h;
+			if (top < bestTop || (top == bestTop && this.nodeWidth[i] < bestWidth)) {
+				bestIndex = i;
+				bestTop = top;
+				bestWidth = this.nodeWidth[i];
+				bestY = y;
+			}
+		}
+
+		if (bestIndex == -1) {
+			return false;
+		}
+
+		position[0] = this.nodeX[bestIndex];
+		position[1] = bestY;
+		this.addSkylineLevel(bestIndex, this.nodeX[bestIndex], bestY + h, w);
+		return true;
+	}
+
+	/**
+	 * @return The Y position a rectangle would have starting at the segment {@code index}, or -1 if it doesn't fit.
+	 */
+	private int fit(int index, int w, int h) {
+		int x = this.nodeX[index];
+		if (x + w > this.width) return -1;
+
+		int y = 0;
+		int remaining = w;
+		for (int i = index; remaining > 0; i++) {
+			y = Math.max(y, this.nodeY[i]);
+			if (y + h > this.height) return -1;
+			remaining -= this.nodeWidth[i];
+		}
+		return y;
+	}
+
+	private void addSkylineLevel(int index, int x, int y, int w) {
+		this.insertNode(index, x, y, w);
+
+		// Shrink or remove the segments now covered by the new one.
+		int i = index + 1;
+		while (i < this.nodeCount) {
+			int end = this.nodeX[i - 1] + this.nodeWidth[i - 1];
+			if (this.nodeX[i] >= end) break;
+
+			int shrink = end - this.nodeX[i];
+			this.nodeX[i] += shrink;
+			this.nodeWidth[i] -= shrink;
+			if (this.nodeWidth[i] > 0) break;
+
+			this.removeNode(i);
+		}
+
+		// Merge neighbours at the same height.
+		for (int j = 0; j < this.nodeCount - 1; j++) {
+			if (this.nodeY[j] == this.nodeY[j + 1]) {
+				this.nodeWidth[j] += this.nodeWidth[j + 1];
+				this.removeNode(j + 1);
+				j--;
+			}
+		}
+	}
+
+	private void insertNode(int index, int x, int y, int w) {
+		if (this.nodeCount == this.nodeX.length) {
+			int capacity = this.nodeX.length * 2;
+			this.nodeX = Arrays.copyOf(this.nodeX, capacity);
+			this.nodeY = Arrays.copyOf(this.nodeY, capacity);
+			this.nodeWidth = Arrays.copyOf(this.nodeWidth, capacity);
+		}
+
+		int moved = this.nodeCount - index;
+		System.arraycopy(this.nodeX, index, this.nodeX, index + 1, moved);
+		System.arraycopy(this.nodeY, index, this.nodeY, index + 1, moved);
+		System.arraycopy(this.nodeWidth, index, this.nodeWidth, index + 1, moved);
+		this.nodeX[index] = x;
+		this.nodeY[index] = y;
+		this.nodeWidth[index] = w;
+		this.nodeCount++;
+	}
+
+	private void removeNode(int index) {
+		int moved = this.nodeCount - index - 1;
+		System.arraycopy(this.nodeX, index + 1, this.nodeX, index, moved);
+		System.arraycopy(this.nodeY, index + 1, this.nodeY, index, moved);
+		System.arraycopy(this.nodeWidth, index + 1, this.nodeWidth, index, moved);
+		this.nodeCount--;
+	}
+
+	private static int nextPowerOfTwo(int value) {
+		return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+}
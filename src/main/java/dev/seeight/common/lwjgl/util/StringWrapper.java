@@ -21,6 +21,7 @@ package dev.seeight.common.lwjgl.util;
 import dev.seeight.common.lwjgl.font.FontRenderer;
 import dev.seeight.common.lwjgl.font.json.CharacterData;
 import dev.seeight.common.lwjgl.font.IFont;
+import dev.seeight.common.lwjgl.font.KerningTable;
 import dev.seeight.common.lwjgl.fontrenderer.IFontRenderer;
 import org.jetbrains.annotations.Nullable;
 
@@ -142,6 +143,11 @@ public class StringWrapper {
                 continue;
             }
 
+            // Move closer to the previous character, unless it starts the line.
+            if (width != 0) {
+                width += getKerning(font, fontRenderer, chars[i - 1], c);
+            }
+
             // Add the current character's advance
             CharacterData characterData = font.getCharacterData(c);
             if (fontRenderer != null) {
@@ -159,6 +165,7 @@ public class StringWrapper {
                 for (; i1 < chars.length; i1++) {
                     char c1 = chars[i1];
 
+                    extraWidth += getKerning(font, fontRenderer, chars[i1 - 1], c1);
                     CharacterData cd = font.getCharacterData(c1);
                     if (fontRenderer != null) {
                         extraWidth += fontRenderer.getCharacterWidth(font, cd, c1);
@@ -188,4 +195,13 @@ public class StringWrapper {
 
         return builder.toString();
     }
+
+    private static float getKerning(IFont font, @Nullable IFontRenderer fontRenderer, int previous, int codepoint) {
+        if (fontRenderer != null) {
+            return fontRenderer.getKerning(font, previous, codepoint);
+        }
+
+        KerningTable kerning = font.getKerningTable();
+        return kerning == null ? 0 : kerning.get(previous, codepoint);
+    }
 }
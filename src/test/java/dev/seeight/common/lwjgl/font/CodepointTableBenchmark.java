@@ -0,0 +1,103 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.font;
+
+import dev.seeight.common.lwjgl.font.json.CharacterData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares the cost of looking up glyphs with a boxed {@link Map} (what the fonts used before)
+ * against a {@link CodepointTable}. It doesn't require a GL context; run it with {@code gradlew codepointTableBenchmark}.
+ */
+public class CodepointTableBenchmark {
+	private static final int ROUNDS = 10;
+	private static final int LOOKUPS_PER_ROUND = 20_000_000;
+
+	public static void main(String[] args) {
+		// Printable ASCII, like the default TTFFont range, plus a sparse block of CJK ideographs.
+		int[] codepoints = new int[95 + 512];
+		for (int i = 0; i < 95; i++) {
+			codepoints[i] = 32 + i;
+		}
+		for (int i = 0; i < 512; i++) {
+			codepoints[95 + i] = 0x4E00 + i * 3;
+		}
+
+		Map<Integer, CharacterData> map = new HashMap<>();
+		CodepointTable table = new CodepointTable();
+		CharacterData[] glyphs = new CharacterData[codepoints.length];
+		for (int i = 0; i < codepoints.length; i++) {
+			CharacterData data = new CharacterData();
+			data.advance = i;
+			glyphs[i] = data;
+			map.put(codepoints[i], data);
+			table.put(codepoints[i], i);
+		}
+
+		// Mostly ASCII text, with some ideographs and missing codepoints mixed in.
+		int[] text = new int[4096];
+		for (int i = 0; i < text.length; i++) {
+			if (i % 17 == 0) {
+				text[i] = 0x4E00 + (i % 512) * 3;
+			} else if (i % 61 == 0) {
+				text[i] = 0x1F600 + i % 64;
+			} else {
+				text[i] = 32 + (i * 7) % 95;
+			}
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			float sumMap = lookupMap(map, text);
+			long mapTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			float sumTable = lookupTable(table, glyphs, text);
+			long tableTime = System.nanoTime() - start;
+
+			if (sumMap != sumTable) {
+				throw new IllegalStateException("Lookups returned different glyphs.");
+			}
+
+			System.out.printf("round %d: HashMap %.2f ns/lookup, CodepointTable %.2f ns/lookup%n", round,
+					(double) mapTime / LOOKUPS_PER_ROUND, (double) tableTime / LOOKUPS_PER_ROUND);
+		}
+	}
+
+	private static float lookupMap(Map<Integer, CharacterData> map, int[] text) {
+		float sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+			CharacterData data = map.get(text[i & (text.length - 1)]);
+			if (data != null) sum += data.advance;
+		}
+		return sum;
+	}
+
+	private static float lookupTable(CodepointTable table, CharacterData[] glyphs, int[] text) {
+		float sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+			int index = table.get(text[i & (text.length - 1)]);
+			CharacterData data = index == CodepointTable.MISSING ? null : glyphs[index];
+			if (data != null) sum += data.advance;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the vertices and indices of glyph quads without an OpenGL context.
+ *
+ * @author C8FF
+ */
+class GlyphQuadBufferTest {
+	@Test
+	void indicesSplitEveryQuadInTwoTriangles() {
+		IntBuffer indices = GlyphQuadBuffer.createIndices(3);
+		assertEquals(3 * GlyphQuadBuffer.INDICES_PER_QUAD, indices.remaining());
+
+		int[] expected = {
+				0, 1, 2, 2, 3, 0,
+				4, 5, 6, 6, 7, 4,
+				8, 9, 10, 10, 11, 8,
+		};
+		int[] actual = new int[indices.remaining()];
+		indices.get(actual);
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	void trianglesHaveTheSameWinding() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(2);
+		buffer.clear(false);
+		buffer.put(10, 20, 30, 50, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+		buffer.put(-5, -5, 5, 0, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+
+		FloatBuffer data = buffer.getData();
+		IntBuffer indices = GlyphQuadBuffer.createIndices(buffer.getQuadCount());
+		for (int quad = 0; quad < buffer.getQuadCount(); quad++) {
+			float first = signedArea(data, indices, quad * GlyphQuadBuffer.INDICES_PER_QUAD, GlyphQuadBuffer.STRIDE);
+			float second = signedArea(data, indices, quad * GlyphQuadBuffer.INDICES_PER_QUAD + 3, GlyphQuadBuffer.STRIDE);
+			// Both halves cover the quad with the same orientation.
+			assertTrue(first > 0, "quad " + quad);
+			assertEquals(first, second, 1e-6F, "quad " + quad);
+		}
+		assertEquals(20 * 30 / 2F, signedArea(data, indices, 0, GlyphQuadBuffer.STRIDE), 1e-6F);
+	}
+
+	@Test
+	void writesFourVerticesPerQuad() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(1);
+		buffer.clear(false);
+		buffer.put(1, 2, 3, 4, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7);
+
+		assertEquals(1, buffer.getQuadCount());
+		assertEquals(GlyphQuadBuffer.INDICES_PER_QUAD, buffer.getIndexCount());
+		assertEquals(GlyphQuadBuffer.STRIDE, buffer.getStride());
+		assertEquals(GlyphQuadBuffer.VERTICES_PER_QUAD * GlyphQuadBuffer.STRIDE, buffer.getLength());
+
+		// Top left, top right, bottom right and bottom left. The layer isn't written.
+		assertData(buffer,
+				1, 2, 0.25F, 0.5F, 0.1F, 0.2F, 0.3F, 0.4F,
+				3, 2, 0.75F, 0.5F, 0.1F, 0.2F, 0.3F, 0.4F,
+				3, 4, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F,
+				1, 4, 0.25F, 1F, 0.1F, 0.2F, 0.3F, 0.4F);
+	}
+
+	@Test
+	void layeredVerticesHaveTheLayer() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(1);
+		buffer.clear(true);
+		buffer.put(1, 2, 3, 4, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7);
+
+		assertTrue(buffer.isLayered());
+		assertEquals(GlyphQuadBuffer.LAYERED_STRIDE, buffer.getStride());
+		assertEquals(GlyphQuadBuffer.VERTICES_PER_QUAD * GlyphQuadBuffer.LAYERED_STRIDE, buffer.getLength());
+		assertData(buffer,
+				1, 2, 0.25F, 0.5F, 0.1F, 0.2F, 0.3F, 0.4F, 7,
+				3, 2, 0.75F, 0.5F, 0.1F, 0.2F, 0.3F, 0.4F, 7,
+				3, 4, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7,
+				1, 4, 0.25F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7);
+	}
+
+	@Test
+	void instancedQuadsAreOneRecord() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(2, true);
+		buffer.clear(false);
+		buffer.put(1, 2, 4, 6, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7);
+
+		assertTrue(buffer.isInstanced());
+		assertEquals(GlyphQuadBuffer.INSTANCE_STRIDE, buffer.getStride());
+		assertEquals(GlyphQuadBuffer.INSTANCE_STRIDE, buffer.getLength());
+		// The position and size, the texture rectangle and the color.
+		assertData(buffer, 1, 2, 3, 4, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F);
+
+		buffer.clear(true);
+		buffer.put(1, 2, 4, 6, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7);
+		buffer.put(0, 0, 1, 1, 0, 0, 1, 1, 1, 1, 1, 1, 2);
+		assertEquals(GlyphQuadBuffer.LAYERED_INSTANCE_STRIDE, buffer.getStride());
+		assertEquals(2 * GlyphQuadBuffer.LAYERED_INSTANCE_STRIDE, buffer.getLength());
+		assertData(buffer,
+				1, 2, 3, 4, 0.25F, 0.5F, 0.75F, 1F, 0.1F, 0.2F, 0.3F, 0.4F, 7,
+				0, 0, 1, 1, 0, 0, 1, 1, 1, 1, 1, 1, 2);
+	}
+
+	@Test
+	void tracksTheBoundsOfTheQuads() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(4);
+		buffer.clear(false);
+		assertEquals(Float.POSITIVE_INFINITY, buffer.getMinX());
+		assertEquals(Float.POSITIVE_INFINITY, buffer.getMinY());
+		assertEquals(Float.NEGATIVE_INFINITY, buffer.getMaxX());
+		assertEquals(Float.NEGATIVE_INFINITY, buffer.getMaxY());
+
+		buffer.put(10, 20, 30, 40, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+		// Flipped quads count by their edges, not by their first corner.
+		buffer.put(50, -5, -8, 15, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+		assertEquals(-8, buffer.getMinX());
+		assertEquals(-5, buffer.getMinY());
+		assertEquals(50, buffer.getMaxX());
+		assertEquals(40, buffer.getMaxY());
+
+		buffer.clear(true);
+		assertEquals(Float.POSITIVE_INFINITY, buffer.getMinX());
+		assertEquals(Float.NEGATIVE_INFINITY, buffer.getMaxY());
+	}
+
+	@Test
+	void growsUntilTheMaximumAmountOfQuads() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(2);
+		buffer.clear(true);
+		assertEquals(GlyphQuadBuffer.getCapacity(2), buffer.getCapacity());
+
+		int maxQuads = 5;
+		for (int i = 0; i < maxQuads; i++) {
+			assertTrue(buffer.ensureRemaining(1, maxQuads), "quad " + i);
+			buffer.put(i, 0, i + 1, 1, 0, 0, 1, 1, 1, 1, 1, 1, i);
+		}
+		assertEquals(maxQuads, buffer.getQuadCount());
+		assertEquals(GlyphQuadBuffer.getCapacity(maxQuads), buffer.getCapacity());
+
+		// Full, and not allowed to grow any more.
+		assertFalse(buffer.ensureRemaining(1, maxQuads));
+		assertEquals(GlyphQuadBuffer.getCapacity(maxQuads), buffer.getCapacity());
+		// A bigger limit lets it grow again.
+		assertTrue(buffer.ensureRemaining(3, 100));
+		assertEquals(GlyphQuadBuffer.getCapacity(10), buffer.getCapacity());
+
+		// The quads written before growing are kept.
+		FloatBuffer data = buffer.getData();
+		assertEquals(maxQuads * GlyphQuadBuffer.VERTICES_PER_QUAD * GlyphQuadBuffer.LAYERED_STRIDE, data.remaining());
+		for (int i = 0; i < maxQuads; i++) {
+			int vertex = i * GlyphQuadBuffer.VERTICES_PER_QUAD * GlyphQuadBuffer.LAYERED_STRIDE;
+			assertEquals(i, data.get(vertex));
+			assertEquals(i, data.get(vertex + GlyphQuadBuffer.LAYERED_STRIDE - 1));
+		}
+	}
+
+	@Test
+	void doesNotGrowWhenThereIsSpace() {
+		GlyphQuadBuffer buffer = new GlyphQuadBuffer(4);
+		buffer.clear(false);
+		int capacity = buffer.getCapacity();
+		assertTrue(buffer.ensureRemaining(4, 4));
+		assertEquals(capacity, buffer.getCapacity());
+		// More quads than the limit never fit.
+		assertFalse(buffer.ensureRemaining(8, 4));
+	}
+
+	/**
+	 * @return The signed area of a triangle, positive if it goes clockwise on a Y-down screen.
+	 */
+	private static float signedArea(FloatBuffer data, IntBuffer indices, int first, int stride) {
+		int a = indices.get(first) * stride;
+		int b = indices.get(first + 1) * stride;
+		int c = indices.get(first + 2) * stride;
+		float abX = data.get(b) - data.get(a);
+		float abY = data.get(b + 1) - data.get(a + 1);
+		float acX = data.get(c) - data.get(a);
+		float acY = data.get(c + 1) - data.get(a + 1);
+		return (abX * acY - abY * acX) / 2;
+	}
+
+	private static void assertData(GlyphQuadBuffer buffer, float... expected) {
+		FloatBuffer data = buffer.getData();
+		float[] actual = new float[data.remaining()];
+		data.get(actual);
+		assertArrayEquals(expected, actual);
+	}
+}
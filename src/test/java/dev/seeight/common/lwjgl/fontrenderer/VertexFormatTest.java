@@ -0,0 +1,222 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.fontrenderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how vertices are packed into the compact formats, without an OpenGL context.
+ *
+ * @author C8FF
+ */
+class VertexFormatTest {
+	private static final short POSITIVE_INFINITY = 0x7C00;
+	private static final short NEGATIVE_INFINITY = (short) 0xFC00;
+	private static final short MAX_HALF = 0x7BFF;
+	private static final short MIN_NORMAL = 0x0400;
+
+	@Test
+	void everyHalfConvertsBackToItself() {
+		for (int bits = 0; bits < 0x7C00; bits++) {
+			assertHalf((short) bits, toFloat(bits));
+			assertHalf((short) (bits | 0x8000), -toFloat(bits));
+		}
+	}
+
+	@Test
+	void roundsToTheNearestHalfAndTiesToEven() {
+		// Between every pair of neighbours, including the subnormals and the step into the normals.
+		for (int bits = 0; bits < 0x7BFF; bits++) {
+			float low = toFloat(bits);
+			float high = toFloat(bits + 1);
+			float middle = (low + high) / 2;
+			short even = (short) ((bits & 1) == 0 ? bits : bits + 1);
+
+			assertHalf(even, middle);
+			assertHalf((short) bits, Math.nextDown(middle));
+			assertHalf((short) (bits + 1), Math.nextUp(middle));
+			assertHalf((short) (even | 0x8000), -middle);
+		}
+	}
+
+	@Test
+	void subnormalBoundaries() {
+		float smallestSubnormal = 0x1p-24F;
+		assertHalf((short) 0x0001, smallestSubnormal);
+		// Halfway to the smallest subnormal rounds to zero, which is even.
+		assertHalf((short) 0, smallestSubnormal / 2);
+		assertHalf((short) 0x0001, Math.nextUp(smallestSubnormal / 2));
+		assertHalf((short) 0, 1e-10F);
+		assertHalf((short) 0, Float.MIN_VALUE);
+		assertHalf((short) 0x8000, -0F);
+
+		assertHalf((short) 0x03FF, 0x3FFp-24F);
+		assertHalf(MIN_NORMAL, 0x1p-14F);
+		// The largest subnormal plus half a step is a tie, and the smallest normal is even.
+		assertHalf(MIN_NORMAL, 0x3FF.8p-24F);
+		assertHalf((short) 0x03FF, Math.nextDown(0x3FF.8p-24F));
+	}
+
+	@Test
+	void overflowBecomesInfinite() {
+		assertHalf(MAX_HALF, 65504);
+		// 65520 is halfway to the next step, which would be infinity, and infinity is even.
+		assertHalf(MAX_HALF, Math.nextDown(65520F));
+		assertHalf(POSITIVE_INFINITY, 65520);
+		assertHalf(POSITIVE_INFINITY, 65536);
+		assertHalf(POSITIVE_INFINITY, 1e10F);
+		assertHalf(POSITIVE_INFINITY, Float.MAX_VALUE);
+		assertHalf(POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+		assertHalf(NEGATIVE_INFINITY, -65520);
+		assertHalf(NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+		assertHalf(POSITIVE_INFINITY, Float.NaN);
+	}
+
+	@Test
+	void halfPositionsAreRelativeToTheOrigin() {
+		ByteBuffer packed = packVertex(VertexFormat.HALF_FLOAT, 2050.5F, -3, 2048, -4);
+		assertEquals(VertexFormat.toHalf(2.5F), packed.getShort(0));
+		assertEquals(VertexFormat.toHalf(1), packed.getShort(2));
+	}
+
+	@Test
+	void shortPositionsRoundToTheNearestQuarter() {
+		assertEquals(0, packShortX(0));
+		assertEquals(4, packShortX(1));
+		assertEquals(1, packShortX(0.25F));
+		assertEquals(0, packShortX(0.12F));
+		assertEquals(1, packShortX(0.13F));
+		assertEquals(-1, packShortX(-0.13F));
+		assertEquals(0, packShortX(-0.12F));
+		// Ties round up, on both sides of the origin.
+		assertEquals(5, packShortX(1.125F));
+		assertEquals(-4, packShortX(-1.125F));
+		// Relative to the origin.
+		assertEquals(4, packShortX(101, 100));
+		assertEquals(-6, packShortX(98.5F, 100));
+	}
+
+	@Test
+	void shortPositionsAreClampedToTheRange() {
+		assertEquals(Short.MAX_VALUE, packShortX(VertexFormat.SHORT.getPositionRange()));
+		assertEquals(Short.MAX_VALUE, packShortX(8192));
+		assertEquals(Short.MAX_VALUE, packShortX(1e9F));
+		assertEquals(Short.MIN_VALUE, packShortX(-8192));
+		assertEquals(Short.MIN_VALUE, packShortX(-8300));
+		assertEquals(Short.MIN_VALUE, packShortX(-1e9F));
+		assertEquals(Short.MAX_VALUE, packShortX(9000, 500));
+	}
+
+	@Test
+	void colorsAreBytesInRgbaOrder() {
+		GlyphQuadBuffer quads = new GlyphQuadBuffer(1);
+		quads.clear(false);
+		quads.put(0, 0, 1, 1, 0, 0.5F, 1, 1, 1, 0, 0.5F, 0.2F, 0);
+		ByteBuffer packed = VertexFormat.SHORT.pack(quads.getData(), false, false, new VertexFormat.Scratch());
+
+		int stride = VertexFormat.SHORT.getStride(false, false);
+		assertEquals(12, stride);
+		assertEquals(4 * stride, packed.remaining());
+		for (int vertex = 0; vertex < 4; vertex++) {
+			int color = vertex * stride + 8;
+			// Read as normalized unsigned bytes, so the order in memory is the same on every platform.
+			assertEquals((byte) 0xFF, packed.get(color));
+			assertEquals((byte) 0x00, packed.get(color + 1));
+			assertEquals((byte) 0x80, packed.get(color + 2));
+			assertEquals((byte) 0x33, packed.get(color + 3));
+		}
+		// Texture coordinates are normalized unsigned shorts.
+		assertEquals((short) 0, packed.getShort(4));
+		assertEquals((short) 0x8000, packed.getShort(6));
+		assertEquals((short) 0xFFFF, packed.getShort(stride + 4));
+	}
+
+	@Test
+	void colorsAreClamped() {
+		GlyphQuadBuffer quads = new GlyphQuadBuffer(1);
+		quads.clear(false);
+		quads.put(0, 0, 1, 1, 0, 0, 1, 1, 2, -1, 1, 0, 0);
+		ByteBuffer packed = VertexFormat.SHORT.pack(quads.getData(), false, false, new VertexFormat.Scratch());
+		assertEquals((byte) 0xFF, packed.get(8));
+		assertEquals((byte) 0x00, packed.get(9));
+		assertEquals((byte) 0xFF, packed.get(10));
+		assertEquals((byte) 0x00, packed.get(11));
+	}
+
+	@Test
+	void layersArePadded() {
+		GlyphQuadBuffer quads = new GlyphQuadBuffer(1);
+		quads.clear(true);
+		quads.put(0, 0, 1, 1, 0, 0, 1, 1, 1, 1, 1, 1, 300);
+		ByteBuffer packed = VertexFormat.SHORT.pack(quads.getData(), false, true, new VertexFormat.Scratch());
+
+		int stride = VertexFormat.SHORT.getStride(false, true);
+		assertEquals(16, stride);
+		assertEquals(4 * stride, packed.remaining());
+		assertEquals((short) 300, packed.getShort(12));
+		assertEquals((short) 0, packed.getShort(14));
+	}
+
+	@Test
+	void floatVerticesCantBeMoved() {
+		GlyphQuadBuffer quads = new GlyphQuadBuffer(1);
+		quads.clear(false);
+		quads.put(0, 0, 1, 1, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+		assertThrows(IllegalArgumentException.class, () -> VertexFormat.FLOAT.pack(quads.getData(), false, false, 1, 0, new VertexFormat.Scratch()));
+	}
+
+	private static short packShortX(float x) {
+		return packShortX(x, 0);
+	}
+
+	private static short packShortX(float x, float originX) {
+		return packVertex(VertexFormat.SHORT, x, 0, originX, 0).getShort(0);
+	}
+
+	/**
+	 * @return The packed vertices of a quad with its first corner at {@code x, y}.
+	 */
+	private static ByteBuffer packVertex(VertexFormat format, float x, float y, float originX, float originY) {
+		GlyphQuadBuffer quads = new GlyphQuadBuffer(1);
+		quads.clear(false);
+		quads.put(x, y, x + 1, y + 1, 0, 0, 1, 1, 1, 1, 1, 1, 0);
+		return format.pack(quads.getData(), false, false, originX, originY, new VertexFormat.Scratch());
+	}
+
+	private static void assertHalf(short expected, float value) {
+		short actual = VertexFormat.toHalf(value);
+		assertEquals(expected, actual, () -> String.format("%a became 0x%04X instead of 0x%04X", value, actual & 0xFFFF, expected & 0xFFFF));
+	}
+
+	/**
+	 * Decodes the bits of a positive 16-bit float. Every one of them is exact as a float.
+	 */
+	private static float toFloat(int bits) {
+		int exponent = bits >>> 10;
+		int mantissa = bits & 0x3FF;
+		if (exponent == 0) {
+			return mantissa * 0x1p-24F;
+		}
+		return (0x400 | mantissa) * (float) Math.pow(2, exponent - 25);
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * common-lwjgl-stuff
+ * Copyright (C) 2024 c8ff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.seeight.common.lwjgl.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Packs the bitmap boxes of real glyphs. The boxes are the ones {@code stbtt_GetCodepointBitmapBox} gives for
+ * DejaVu Sans at several sizes, stored in {@code dejavu-sans-<size>.txt} so the tests don't need the native library.
+ *
+ * @author C8FF
+ */
+class SkylinePackerTest {
+	private static final int[] SIZES = {12, 24, 48, 96};
+	private static final int[][] RANGES = {
+			{0x20, 0x7E}, // ASCII
+			{0x20, 0x24F}, // Latin, up to Latin Extended-B
+			{0x370, 0x4FF}, // Greek and Cyrillic
+			{0x20, 0x4FF}, // All of the above
+	};
+	private static final int MAX_SIZE = 4096;
+	/**
+	 * Growing in powers of two can leave up to half of the atlas empty, so sets that barely needed the last growth
+	 * stay close to this. Most sets are packed above 0.6.
+	 */
+	private static final float MIN_EFFICIENCY = 0.4F;
+
+	static Stream<Arguments> glyphSets() {
+		List<Arguments> arguments = new ArrayList<>();
+		for (int size : SIZES) {
+			for (int[] range : RANGES) {
+				arguments.add(Arguments.of(size, range[0], range[1]));
+			}
+		}
+		return arguments.stream();
+	}
+
+	@ParameterizedTest(name = "{0} px, codepoints {1} to {2}")
+	@MethodSource("glyphSets")
+	void packsWithoutOverlapsInsideTheAtlas(int size, int first, int last) {
+		int[] boxes = loadBoxes(size, first, last);
+		for (int padding = 0; padding <= 2; padding++) {
+			SkylinePacker packer = new SkylinePacker(64, 64, padding, MAX_SIZE);
+			int[] positions = packTallestFirst(packer, boxes);
+			assertNotNull(positions, "The glyphs don't fit in " + MAX_SIZE + "x" + MAX_SIZE);
+			assertPacked(packer, boxes, positions, padding);
+		}
+	}
+
+	@ParameterizedTest(name = "{0} px, codepoints {1} to {2}")
+	@MethodSource("glyphSets")
+	void packsInCodepointOrder(int size, int first, int last) {
+		int[] boxes = loadBoxes(size, first, last);
+		SkylinePacker packer = new SkylinePacker(64, 64, 1, MAX_SIZE);
+		int[] positions = new int[boxes.length];
+		int[] position = new int[2];
+		for (int i = 0; i < boxes.length / 2; i++) {
+			assertTrue(packer.pack(boxes[i * 2], boxes[i * 2 + 1], position));
+			positions[i * 2] = position[0];
+			positions[i * 2 + 1] = position[1];
+		}
+		assertPacked(packer, boxes, positions, 1);
+	}
+
+	@ParameterizedTest(name = "{0} px, codepoints {1} to {2}")
+	@MethodSource("glyphSets")
+	void growsInPowersOfTwo(int size, int first, int last) {
+		int[] boxes = loadBoxes(size, first, last);
+		SkylinePacker packer = new SkylinePacker(64, 64, 1, MAX_SIZE);
+		assertNotNull(packTallestFirst(packer, boxes));
+
+		int width = packer.getWidth();
+		int height = packer.getHeight();
+		assertEquals(1, Integer.bitCount(width), "width " + width);
+		assertEquals(1, Integer.bitCount(height), "height " + height);
+		assertTrue(width <= MAX_SIZE && height <= MAX_SIZE);
+		// The smaller side is doubled first, so the atlas is square or twice as wide.
+		assertTrue(width == height || width == height * 2, width + "x" + height);
+	}
+
+	@ParameterizedTest(name = "{0} px, codepoints {1} to {2}")
+	@MethodSource("glyphSets")
+	void keepsAMinimumEfficiency(int size, int first, int last) {
+		int[] boxes = loadBoxes(size, first, last);
+		SkylinePacker packer = new SkylinePacker(64, 64, 1, MAX_SIZE);
+		assertNotNull(packTallestFirst(packer, boxes));
+
+		long area = 0;
+		for (int i = 0; i < boxes.length; i += 2) {
+			area += (long) boxes[i] * boxes[i + 1];
+		}
+		assertEquals(area, packer.getUsedArea());
+		assertEquals((float) area / (packer.getWidth() * packer.getHeight()), packer.getEfficiency(), 1e-6F);
+		// Tiny sets are dominated by the initial size of the atlas.
+		if (area * 4 >= 64 * 64) {
+			assertTrue(packer.getEfficiency() >= MIN_EFFICIENCY, "efficiency " + packer.getEfficiency());
+		}
+	}
+
+	@Test
+	void failsOnceTheMaximumSizeIsExceeded() {
+		int[] boxes = loadBoxes(96, 0x20, 0x4FF);
+		SkylinePacker packer = new SkylinePacker(64, 64, 1, 512);
+		assertNull(packTallestFirst(packer, boxes));
+		assertEquals(512, packer.getWidth());
+		assertEquals(512, packer.getHeight());
+
+		// A rectangle larger than the maximum size never fits.
+		packer = new SkylinePacker(64, 64, 1, 512);
+		assertFalse(packer.pack(512, 8, new int[2]));
+		assertEquals(512, packer.getWidth());
+		assertEquals(512, packer.getHeight());
+		assertEquals(0, packer.getPackedCount());
+	}
+
+	@Test
+	void fixedSizeDoesNotGrow() {
+		int[] boxes = loadBoxes(48, 0x20, 0x24F);
+		SkylinePacker packer = new SkylinePacker(256, 256, 1);
+		assertNull(packTallestFirst(packer, boxes));
+		assertEquals(256, packer.getWidth());
+		assertEquals(256, packer.getHeight());
+	}
+
+	@Test
+	void clearKeepsTheSize() {
+		int[] boxes = loadBoxes(24, 0x20, 0x24F);
+		SkylinePacker packer = new SkylinePacker(64, 64, 1, MAX_SIZE);
+		int[] positions = packTallestFirst(packer, boxes);
+		assertNotNull(positions);
+		int width = packer.getWidth();
+		int height = packer.getHeight();
+
+		packer.clear();
+		assertEquals(0, packer.getPackedCount());
+		assertEquals(0, packer.getUsedArea());
+		assertEquals(width, packer.getWidth());
+		assertEquals(height, packer.getHeight());
+
+		// The same glyphs fit again without growing.
+		positions = packTallestFirst(packer, boxes);
+		assertNotNull(positions);
+		assertPacked(packer, boxes, positions, 1);
+		assertEquals(width, packer.getWidth());
+		assertEquals(height, packer.getHeight());
+	}
+
+	/**
+	 * Checks that every rectangle is inside the atlas with {@code padding} to its edges, and at least {@code padding}
+	 * away from every other rectangle.
+	 */
+	private static void assertPacked(SkylinePacker packer, int[] boxes, int[] positions, int padding) {
+		int count = boxes.length / 2;
+		int nonEmpty = 0;
+		for (int i = 0; i < count; i++) {
+			int w = boxes[i * 2];
+			int h = boxes[i * 2 + 1];
+			if (w == 0 || h == 0) continue;
+			nonEmpty++;
+
+			int x = positions[i * 2];
+			int y = positions[i * 2 + 1];
+			assertTrue(x >= padding && y >= padding, "glyph " + i + " at " + x + ", " + y + " is on the edge");
+			assertTrue(x + w + padding <= packer.getWidth() && y + h + padding <= packer.getHeight(), "glyph " + i + " is out of bounds");
+
+			// Growing each rectangle by the padding on one side must not make them overlap.
+			for (int j = i + 1; j < count; j++) {
+				int w2 = boxes[j * 2];
+				int h2 = boxes[j * 2 + 1];
+				if (w2 == 0 || h2 == 0) continue;
+
+				int x2 = positions[j * 2];
+				int y2 = positions[j * 2 + 1];
+				boolean apart = x + w + padding <= x2 || x2 + w2 + padding <= x || y + h + padding <= y2 || y2 + h2 + padding <= y;
+				assertTrue(apart, "glyphs " + i + " and " + j + " are closer than " + padding);
+			}
+		}
+		assertEquals(nonEmpty, packer.getPackedCount());
+	}
+
+	/**
+	 * Packs the boxes tallest first, like the fonts do.
+	 *
+	 * @return The X and Y of each box, or {@code null} if one didn't fit.
+	 */
+	private static int[] packTallestFirst(SkylinePacker packer, int[] boxes) {
+		int count = boxes.length / 2;
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = ((long) boxes[i * 2 + 1] << 32) | i;
+		}
+		Arrays.sort(order);
+
+		int[] positions = new int[count * 2];
+		int[] position = new int[2];
+		for (int j = count - 1; j >= 0; j--) {
+			int i = (int) order[j];
+			if (!packer.pack(boxes[i * 2], boxes[i * 2 + 1], position)) {
+				return null;
+			}
+			positions[i * 2] = position[0];
+			positions[i * 2 + 1] = position[1];
+		}
+		return positions;
+	}
+
+	/**
+	 * @return The width and height of every glyph of the range.
+	 */
+	private static int[] loadBoxes(int size, int first, int last) {
+		String name = "dejavu-sans-" + size + ".txt";
+		InputStream stream = SkylinePackerTest.class.getResourceAsStream(name);
+		assertNotNull(stream, name);
+
+		int[] boxes = new int[256];
+		int length = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) continue;
+
+				String[] parts = line.split(" ");
+				int codepoint = Integer.parseInt(parts[0], 16);
+				if (codepoint < first || codepoint > last) continue;
+
+				if (length == boxes.length) {
+					boxes = Arrays.copyOf(boxes, length * 2);
+				}
+				boxes[length++] = Integer.parseInt(parts[1]);
+				boxes[length++] = Integer.parseInt(parts[2]);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return Arrays.copyOf(boxes, length);
+	}
+}